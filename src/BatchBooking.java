@@ -0,0 +1,334 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+import java.time.format.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Headless pre-booking: reads one request per line and writes one ticket or error per line, in
+// input order. Lines look like
+//
+//     origin,destination,HH:mm,adults,students,seniors,children[,roundTrip[,dwellMinutes]]
+//
+// Blank lines and lines starting with # are skipped.
+public class BatchBooking {
+
+    private static final int DEFAULT_DWELL_MINUTES = 60;
+    private static final Duration QUEUE_TIMEOUT = Duration.ofMinutes(5);
+    private static final long BACKOFF_MILLIS = 1;
+    private static final double IMPORT_REQUESTS_PER_SECOND = 20_000;
+    private static final int IMPORT_BURST = 1_000;
+
+    private static class Request {
+        final int lineNumber;
+        final int origin;
+        final int destination;
+        final LocalTime departure;
+        final int[] passengers;
+        final boolean roundTrip;
+        final int dwellMinutes;
+
+        Request(int lineNumber, int origin, int destination, LocalTime departure,
+                int[] passengers, boolean roundTrip, int dwellMinutes) {
+            this.lineNumber = lineNumber;
+            this.origin = origin;
+            this.destination = destination;
+            this.departure = departure;
+            this.passengers = passengers;
+            this.roundTrip = roundTrip;
+            this.dwellMinutes = dwellMinutes;
+        }
+    }
+
+    private static class Route {
+        final Request request;
+        final ArrayList<Integer> path;
+        final ArrayList<Integer> returnPath;
+
+        Route(Request request, ArrayList<Integer> path, ArrayList<Integer> returnPath) {
+            this.request = request;
+            this.path = path;
+            this.returnPath = returnPath;
+        }
+    }
+
+    private final MetroNetwork network;
+    private final String[] stationNames;
+    private final LocalDate date;
+    private final int maxInFlight;
+    private final RidershipAnalytics analytics;
+    private final BookingRequestQueue intake;
+    private final String clientId;
+
+    public BatchBooking(MetroNetwork network, LocalDate date, int maxInFlight, RidershipAnalytics analytics,
+                        BookingRequestQueue intake, String clientId) {
+        this.network = network;
+        this.stationNames = network.getStationNames();
+        this.date = date;
+        this.maxInFlight = maxInFlight;
+        this.analytics = analytics;
+        this.intake = intake;
+        this.clientId = clientId;
+    }
+
+    // Parsing and routing go through the intake queue as bulk traffic, so an import yields to gates
+    // and kiosks sharing it; train selection and fare run as separate stages on their own threads.
+    // At most maxInFlight requests are between the reader and the writer, so memory stays constant.
+    public void run(BufferedReader in, Writer out, int threadsPerStage) throws IOException, InterruptedException {
+        ExecutorService selection = Executors.newFixedThreadPool(threadsPerStage);
+        ExecutorService fare = Executors.newFixedThreadPool(threadsPerStage);
+        BlockingQueue<CompletableFuture<String>> pending = new ArrayBlockingQueue<>(maxInFlight);
+        CompletableFuture<String> endOfInput = CompletableFuture.completedFuture(null);
+
+        // Futures are queued in input order, so the writer emits results in input order too
+        FutureTask<Void> writer = new FutureTask<>(() -> {
+            while (true) {
+                CompletableFuture<String> result = pending.take();
+                if (result == endOfInput) {
+                    out.flush();
+                    return null;
+                }
+                out.write(result.join());
+            }
+        });
+        Thread writerThread = new Thread(writer, "batch-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+
+                final int number = lineNumber;
+                CompletableFuture<String> result = admit(number, trimmed)
+                    .thenApplyAsync(this::selectTrains, selection)
+                    .thenApplyAsync(this::confirm, fare)
+                    .exceptionally(error -> formatError(number, error));
+
+                if (!enqueue(pending, result, writer)) {
+                    break;
+                }
+            }
+            enqueue(pending, endOfInput, writer);
+            writer.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } finally {
+            selection.shutdownNow();
+            fare.shutdownNow();
+        }
+    }
+
+    // Waits out refusals and back-pressure from the intake queue rather than piling up work; a
+    // request the queue sheds or times out later becomes an error line like any other failure
+    private CompletableFuture<Route> admit(int lineNumber, String line) throws InterruptedException {
+        while (true) {
+            BookingRequestQueue.Submission<Route> submission = intake.submit(clientId,
+                BookingRequestQueue.Priority.BULK_API, QUEUE_TIMEOUT, () -> route(parse(lineNumber, line)));
+            switch (submission.getAdmission()) {
+                case RATE_LIMITED:
+                case QUEUE_FULL:
+                    Thread.sleep(BACKOFF_MILLIS);
+                    break;
+                case ACCEPTED_NEAR_CAPACITY:
+                    while (intake.isUnderPressure()) {
+                        Thread.sleep(BACKOFF_MILLIS);
+                    }
+                    return submission.getResult();
+                default:
+                    return submission.getResult();
+            }
+        }
+    }
+
+    private String confirm(Booking booking) {
+        String ticket = booking.formatTicket() + "\n";
+        if (analytics != null) {
+            analytics.record(booking);
+        }
+        return ticket;
+    }
+
+    // Blocks the reader while the writer catches up; false once the writer has stopped
+    private static boolean enqueue(BlockingQueue<CompletableFuture<String>> pending, CompletableFuture<String> result,
+                                   Future<?> writer) throws InterruptedException {
+        while (!pending.offer(result, 100, TimeUnit.MILLISECONDS)) {
+            if (writer.isDone()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Request parse(int lineNumber, String line) {
+        String[] fields = line.split(",");
+        if (fields.length < 7 || fields.length > 9) {
+            throw new IllegalArgumentException(
+                "Expected origin,destination,HH:mm,adults,students,seniors,children[,roundTrip[,dwellMinutes]]");
+        }
+
+        int origin = stationIndex(fields[0].trim());
+        int destination = stationIndex(fields[1].trim());
+        if (origin == destination) {
+            throw new IllegalArgumentException("Please select different stations for start and end points.");
+        }
+
+        LocalTime departure;
+        try {
+            departure = LocalTime.parse(fields[2].trim(), DateTimeFormatter.ofPattern("HH:mm"));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid departure time: " + fields[2].trim());
+        }
+        if (departure.isBefore(MetroNetwork.FIRST_TRAIN) || departure.isAfter(MetroNetwork.LAST_TRAIN)) {
+            throw new IllegalArgumentException("Trains operate only between " + MetroNetwork.FIRST_TRAIN
+                + " and " + MetroNetwork.LAST_TRAIN + ".");
+        }
+
+        int[] passengers = new int[Booking.Category.values().length];
+        for (int i = 0; i < passengers.length; i++) {
+            passengers[i] = parseCount(fields[3 + i].trim());
+        }
+
+        boolean roundTrip = fields.length > 7 && parseFlag(fields[7].trim());
+        int dwellMinutes = fields.length > 8 ? parseCount(fields[8].trim()) : DEFAULT_DWELL_MINUTES;
+        return new Request(lineNumber, origin, destination, departure, passengers, roundTrip, dwellMinutes);
+    }
+
+    private Route route(Request request) {
+        int[] distances = new int[network.size()];
+        int[] previousStations = new int[network.size()];
+        network.dijkstra(request.origin, distances, previousStations);
+
+        ArrayList<Integer> path = network.reconstructPath(previousStations, request.origin, request.destination);
+        if (path.isEmpty()) {
+            throw new IllegalStateException("No route available between selected stations.");
+        }
+
+        ArrayList<Integer> returnPath = null;
+        if (request.roundTrip) {
+            returnPath = new ArrayList<>(path);
+            Collections.reverse(returnPath);
+        }
+        return new Route(request, path, returnPath);
+    }
+
+    private Booking selectTrains(Route route) {
+        Request request = route.request;
+
+        // Pre-bookings are made ahead of the travel day, so no train has departed yet
+        LocalTime systemTime = MetroNetwork.FIRST_TRAIN;
+        ArrayList<ArrayList<LocalTime[]>> outbound = network.planItineraries(route.path, request.departure, 1, systemTime);
+        if (outbound.isEmpty()) {
+            throw new IllegalStateException("No available trains found from " + stationNames[request.origin]
+                + " to " + stationNames[request.destination] + " after " + request.departure);
+        }
+
+        ArrayList<LocalTime[]> legs = outbound.get(0);
+        ArrayList<LocalTime[]> returnLegs = null;
+        if (route.returnPath != null) {
+            ArrayList<ArrayList<LocalTime[]>> returnOptions = network.planReturnOptions(route.returnPath,
+                legs.get(legs.size() - 1)[1], request.dwellMinutes, 1, systemTime);
+            if (returnOptions.isEmpty()) {
+                throw new IllegalStateException("No return trains available before the last train after a "
+                    + request.dwellMinutes + " minute stay at " + stationNames[request.destination]);
+            }
+            returnLegs = returnOptions.get(0);
+        }
+
+        return new Booking(network, route.path, legs, route.returnPath, returnLegs,
+            request.passengers, request.departure, date);
+    }
+
+    private int stationIndex(String name) {
+        for (int i = 0; i < stationNames.length; i++) {
+            if (stationNames[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown station: " + name);
+    }
+
+    private static int parseCount(String value) {
+        try {
+            int count = Integer.parseInt(value);
+            if (count < 0) {
+                throw new IllegalArgumentException("Negative count: " + value);
+            }
+            return count;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + value);
+        }
+    }
+
+    private static boolean parseFlag(String value) {
+        switch (value.toLowerCase()) {
+            case "true": case "yes": case "y": case "1": case "r":
+                return true;
+            case "false": case "no": case "n": case "0": case "":
+                return false;
+            default:
+                throw new IllegalArgumentException("Invalid round trip flag: " + value);
+        }
+    }
+
+    private static String formatError(int lineNumber, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return String.format("ERROR line %d: %s%n", lineNumber, cause.getMessage());
+    }
+
+    // Usage: --batch <input file|-> [output file|-] [threads per stage] [travel date yyyy-MM-dd]
+    // The travel date defaults to tomorrow, the day a nightly import books for.
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1 || args.length > 4) {
+            usage();
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        LocalDate date = LocalDate.now().plusDays(1);
+        try {
+            if (args.length > 2) {
+                threads = Integer.parseInt(args[2]);
+            }
+            if (args.length > 3) {
+                date = LocalDate.parse(args[3]);
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            usage();
+        }
+        // Train selection assumes none of the day's trains has left yet
+        if (threads <= 0 || !date.isAfter(LocalDate.now())) {
+            usage();
+        }
+
+        MetroNetwork network = MetroNetwork.createDefault();
+        RidershipAnalytics analytics = new RidershipAnalytics(network);
+        BookingRequestQueue intake = new BookingRequestQueue(threads * 64, threads,
+            IMPORT_REQUESTS_PER_SECOND, IMPORT_BURST);
+        BatchBooking batch = new BatchBooking(network, date, threads * 64, analytics,
+            intake, "batch:" + args[0]);
+
+        InputStream input = args[0].equals("-") ? System.in : new FileInputStream(args[0]);
+        OutputStream output = args.length < 2 || args[1].equals("-") ? System.out : new FileOutputStream(args[1]);
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+            batch.run(in, out, threads);
+        } finally {
+            intake.shutdown();
+        }
+        System.err.printf("Booked %d tickets for %d passengers, revenue %.2f%n",
+            analytics.getBookingCount(), analytics.getTotalPassengers(), analytics.getTotalRevenue());
+    }
+
+    private static void usage() {
+        System.err.println("Usage: java TicketBookingSystem --batch <input|-> [output|-] [threads] [travel date]");
+        System.err.println("threads must be positive; the travel date (yyyy-MM-dd, default tomorrow) must be after today");
+        System.exit(2);
+    }
+}
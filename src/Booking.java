@@ -0,0 +1,278 @@
+import java.time.*;
+import java.time.format.*;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+public class Booking {
+
+    static final double BASE_FARE_PER_KM = 2.0; // Base fare per kilometer
+    static final double PEAK_HOUR_MULTIPLIER = 1.5; // Price multiplier during peak hours
+    static final double ROUND_TRIP_MULTIPLIER = 1.8; // 10% discount on the return journey
+    static final int MAX_PASSENGERS = 10;
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+
+    public enum Category {
+        ADULT("Adults", 1.0),
+        STUDENT("Students", 0.5),
+        SENIOR("Senior Citizens", 0.6),
+        CHILD("Children", 0.3);
+
+        final String label;
+        final double multiplier;
+
+        Category(String label, double multiplier) {
+            this.label = label;
+            this.multiplier = multiplier;
+        }
+    }
+
+    private final MetroNetwork network;
+    private final ArrayList<Integer> path;
+    private final ArrayList<LocalTime[]> legs;
+    private final ArrayList<Integer> returnPath;
+    private final ArrayList<LocalTime[]> returnLegs;
+    private final int[] passengers;
+    private final LocalTime pricingTime;
+    private final LocalDate date;
+
+    // returnPath is null for a one-way booking; a round trip needs its return legs, since the fare
+    // charges for the return. pricingTime decides peak pricing: the booking time at the counter,
+    // the travel time for pre-bookings.
+    public Booking(MetroNetwork network, ArrayList<Integer> path, ArrayList<LocalTime[]> legs,
+                   ArrayList<Integer> returnPath, ArrayList<LocalTime[]> returnLegs,
+                   int[] passengers, LocalTime pricingTime, LocalDate date) {
+        if (passengers.length != Category.values().length) {
+            throw new IllegalArgumentException("Expected one passenger count per category");
+        }
+        if (Arrays.stream(passengers).anyMatch(count -> count < 0)) {
+            throw new IllegalArgumentException("Passenger counts cannot be negative.");
+        }
+        int total = Arrays.stream(passengers).sum();
+        if (total == 0) {
+            throw new IllegalArgumentException("Please select at least one passenger.");
+        }
+        if (total > MAX_PASSENGERS) {
+            throw new IllegalArgumentException("Maximum " + MAX_PASSENGERS + " passengers allowed per booking.");
+        }
+        if (returnPath != null && (returnLegs == null || returnLegs.isEmpty())) {
+            throw new IllegalArgumentException("No return trains available before the last train.");
+        }
+        this.network = network;
+        this.path = path;
+        this.legs = legs;
+        this.returnPath = returnPath;
+        this.returnLegs = returnLegs;
+        this.passengers = passengers.clone();
+        this.pricingTime = pricingTime;
+        this.date = date;
+    }
+
+    public ArrayList<Integer> getPath() {
+        return path;
+    }
+
+    public ArrayList<LocalTime[]> getLegs() {
+        return legs;
+    }
+
+    public boolean isRoundTrip() {
+        return returnPath != null;
+    }
+
+    public ArrayList<Integer> getReturnPath() {
+        return returnPath;
+    }
+
+    public ArrayList<LocalTime[]> getReturnLegs() {
+        return returnLegs;
+    }
+
+    public int getPassengers(Category category) {
+        return passengers[category.ordinal()];
+    }
+
+    public int getTotalPassengers() {
+        return Arrays.stream(passengers).sum();
+    }
+
+    public LocalTime getPricingTime() {
+        return pricingTime;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    public int getDistance() {
+        int distance = 0;
+        for (int i = 0; i < path.size() - 1; i++) {
+            distance += network.distance(path.get(i), path.get(i + 1));
+        }
+        return distance;
+    }
+
+    public boolean isPeakHour() {
+        return isPeakHour(pricingTime);
+    }
+
+    static boolean isPeakHour(LocalTime time) {
+        return (time.isAfter(LocalTime.of(8, 0)) && time.isBefore(LocalTime.of(10, 0))) ||
+               (time.isAfter(LocalTime.of(17, 0)) && time.isBefore(LocalTime.of(19, 0)));
+    }
+
+    // Fare for one full-fare passenger after the peak surcharge
+    public double getBaseFare() {
+        double baseFare = getDistance() * BASE_FARE_PER_KM;
+        return isPeakHour() ? baseFare * PEAK_HOUR_MULTIPLIER : baseFare;
+    }
+
+    public double getFare(Category category) {
+        return passengers[category.ordinal()] * getBaseFare() * category.multiplier * (isRoundTrip() ? ROUND_TRIP_MULTIPLIER : 1.0);
+    }
+
+    public double getTotalFare() {
+        double baseFare = getBaseFare();
+        double totalFare = 0.0;
+        for (Category category : Category.values()) {
+            totalFare += passengers[category.ordinal()] * baseFare * category.multiplier;
+        }
+        return isRoundTrip() ? totalFare * ROUND_TRIP_MULTIPLIER : totalFare;
+    }
+
+    public String formatTicket() {
+        StringBuilder ticket = new StringBuilder();
+        ticket.append("╔══════════════════════════════════════════════════════════════╗\n");
+        ticket.append("                      METRO TICKET                      \n");
+        ticket.append("╠══════════════════════════════════════════════════════════════╣\n");
+        ticket.append(String.format("  From: %-52s  \n", "Station " + network.stationName(path.get(0))));
+        ticket.append(String.format("  To:   %-52s  \n", "Station " + network.stationName(path.get(path.size() - 1))));
+        ticket.append(String.format("  Date: %-52s  \n", date));
+        ticket.append("\n");
+        ticket.append("                     JOURNEY DETAILS                    \n");
+        ticket.append("╠══════════════════════════════════════════════════════════════╣\n");
+
+        int totalMinutes = 0;
+        LocalTime previousArrival = null;
+        boolean hasTightConnection = false;
+
+        for (int i = 0; i < legs.size(); i++) {
+            LocalTime[] times = legs.get(i);
+            int from = path.get(i);
+            int to = path.get(i + 1);
+
+            if (previousArrival != null) {
+                int transferTime = (int) previousArrival.until(times[0], ChronoUnit.MINUTES);
+                ticket.append("                                                              \n");
+                ticket.append(String.format("  Transfer at Station %-41s  \n", network.stationName(from)));
+                ticket.append(String.format("  Wait time: %-47s  \n", transferTime + " minutes"));
+                if (transferTime < MetroNetwork.MIN_TRANSFER_TIME) {
+                    ticket.append("  ⚠ WARNING: This is a tight connection!                      \n");
+                    hasTightConnection = true;
+                }
+                ticket.append("                                                              \n");
+                totalMinutes += transferTime;
+            }
+
+            int journeyMinutes = (int) times[0].until(times[1], ChronoUnit.MINUTES);
+            ticket.append(String.format("  Train %-53d  \n", i + 1));
+            ticket.append(String.format("  %-56s  \n", network.stationName(from) + " → " + network.stationName(to)));
+            ticket.append(String.format("  Departure: %-48s  \n", times[0].format(TIME_FORMATTER) + " hrs"));
+            ticket.append(String.format("  Arrival:   %-48s  \n", times[1].format(TIME_FORMATTER) + " hrs"));
+            ticket.append(String.format("  Duration:  %-48s  \n", journeyMinutes + " minutes"));
+
+            totalMinutes += journeyMinutes;
+            previousArrival = times[1];
+        }
+
+        ticket.append(String.format(" \n Total Journey Time: %-42s  \n", totalMinutes + " minutes"));
+
+        if (isRoundTrip()) {
+            ticket.append("╟──────────────────────────────────────────────────────────────╢\n");
+            ticket.append("                     RETURN JOURNEY                     \n");
+            ticket.append("╠══════════════════════════════════════════════════════════════╣\n");
+            for (int i = 0; i < returnLegs.size(); i++) {
+                LocalTime[] times = returnLegs.get(i);
+                ticket.append(String.format("  %-56s  \n",
+                    network.stationName(returnPath.get(i)) + " → " + network.stationName(returnPath.get(i + 1))));
+                ticket.append(String.format("  Departure: %-48s  \n", times[0].format(TIME_FORMATTER) + " hrs"));
+                ticket.append(String.format("  Arrival:   %-48s  \n", times[1].format(TIME_FORMATTER) + " hrs"));
+            }
+        }
+
+        // Add Fare Breakdown section
+        ticket.append("╟──────────────────────────────────────────────────────────────╢\n");
+        ticket.append("                     FARE BREAKDOWN                     \n");
+        ticket.append("╠══════════════════════════════════════════════════════════════╣\n");
+
+        int distance = getDistance();
+        double baseFare = distance * BASE_FARE_PER_KM;
+
+        ticket.append(String.format("  Base fare (%.1f km × %.2f ₺/km): %-33.2f \n",
+            (double) distance, BASE_FARE_PER_KM, baseFare));
+        ticket.append("╟──────────────────────────────────────────────────────────────╢\n");
+
+        if (isPeakHour()) {
+            ticket.append(String.format("  Peak hour surcharge (%.1f×): %-37.2f \n",
+                PEAK_HOUR_MULTIPLIER, baseFare * (PEAK_HOUR_MULTIPLIER - 1)));
+            baseFare *= PEAK_HOUR_MULTIPLIER;
+        }
+
+        int adultCount = getPassengers(Category.ADULT);
+        int studentCount = getPassengers(Category.STUDENT);
+        int seniorCount = getPassengers(Category.SENIOR);
+        int childCount = getPassengers(Category.CHILD);
+        double totalFare = 0.0;
+
+        if (adultCount > 0) {
+            double adultFare = adultCount * baseFare;
+            totalFare += adultFare;
+            ticket.append(String.format("  Adults (%d × %.2f ₺): %-42.2f \n",
+                adultCount, baseFare, adultFare));
+        }
+
+        if (studentCount > 0) {
+            double studentFare = studentCount * baseFare * Category.STUDENT.multiplier;
+            totalFare += studentFare;
+            ticket.append(String.format("  Students (%d × %.2f ₺ × 50%%): %-35.2f \n",
+                studentCount, baseFare, studentFare));
+        }
+
+        if (seniorCount > 0) {
+            double seniorFare = seniorCount * baseFare * Category.SENIOR.multiplier;
+            totalFare += seniorFare;
+            ticket.append(String.format("  Senior Citizens (%d × %.2f ₺ × 60%%): %-30.2f \n",
+                seniorCount, baseFare, seniorFare));
+        }
+
+        if (childCount > 0) {
+            double childFare = childCount * baseFare * Category.CHILD.multiplier;
+            totalFare += childFare;
+            ticket.append(String.format("  Children (%d × %.2f ₺ × 30%%): %-35.2f \n",
+                childCount, baseFare, childFare));
+        }
+
+        if (isRoundTrip()) {
+            double returnDiscount = totalFare * 0.1;
+            ticket.append(String.format("  Round Trip Discount (10%%): -%-35.2f \n", returnDiscount));
+            totalFare *= ROUND_TRIP_MULTIPLIER; // Apply 10% discount on return journey
+        }
+
+        ticket.append("╟──────────────────────────────────────────────────────────────╢\n");
+        ticket.append(String.format("  Total Fare: %-48.2f ₺\n", totalFare));
+
+        ticket.append("╟──────────────────────────────────────────────────────────────╢\n");
+        ticket.append("                     IMPORTANT NOTES                     \n");
+        ticket.append("╠══════════════════════════════════════════════════════════════╣\n");
+        if (hasTightConnection) {
+            ticket.append("  ⚠ WARNING: This journey includes tight connections!          \n");
+            ticket.append("  Please be prepared to move quickly between trains.           \n");
+        }
+        ticket.append("  • Please arrive 5 minutes before departure\n");
+        ticket.append("  • Keep this ticket until the end of your journey\n");
+        ticket.append("  • Follow station staff instructions at all times\n");
+        ticket.append("╚══════════════════════════════════════════════════════════════╝\n");
+
+        return ticket.toString();
+    }
+}
@@ -0,0 +1,339 @@
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+public class BookingRequestQueue {
+
+    // Declaration order is service order: gates and kiosks are served before bulk API traffic
+    public enum Priority { GATE, KIOSK, BULK_API }
+
+    public enum Admission {
+        ACCEPTED,
+        ACCEPTED_NEAR_CAPACITY, // accepted, but the caller should slow down
+        RATE_LIMITED,
+        QUEUE_FULL,
+        SHUT_DOWN
+    }
+
+    private static final double HIGH_WATERMARK = 0.8; // fraction of capacity that signals back-pressure
+    private static final int LIMITER_SWEEP_SIZE = 1024; // client count that triggers dropping idle limiters
+    private static final Duration MAX_TIMEOUT = Duration.ofNanos(Long.MAX_VALUE);
+
+    public static class Submission<T> {
+        private final Admission admission;
+        private final CompletableFuture<T> result;
+
+        Submission(Admission admission, CompletableFuture<T> result) {
+            this.admission = admission;
+            this.result = result;
+        }
+
+        public Admission getAdmission() {
+            return admission;
+        }
+
+        public boolean isAccepted() {
+            return admission == Admission.ACCEPTED || admission == Admission.ACCEPTED_NEAR_CAPACITY;
+        }
+
+        public CompletableFuture<T> getResult() {
+            return result;
+        }
+    }
+
+    private static class Request<T> {
+        final Priority priority;
+        final long sequence;
+        final long enqueuedAt;
+        final long deadline;
+        final Callable<T> task;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Request(Priority priority, long sequence, long enqueuedAt, long deadline, Callable<T> task) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.enqueuedAt = enqueuedAt;
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        // Errors are handed to the caller too, so a failing task cannot take its worker down
+        void run() {
+            try {
+                result.complete(task.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    // Token bucket per client, refilled continuously at the configured rate; guarded by the queue lock
+    private static class RateLimiter {
+        private final double ratePerNano;
+        private final double burst;
+        private double tokens;
+        private long lastRefill;
+
+        RateLimiter(double requestsPerSecond, int burst, long now) {
+            this.ratePerNano = requestsPerSecond / 1_000_000_000.0;
+            this.burst = burst;
+            this.tokens = burst;
+            this.lastRefill = now;
+        }
+
+        boolean tryAcquire(long now) {
+            tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerNano);
+            lastRefill = now;
+            if (tokens < 1.0) {
+                return false;
+            }
+            tokens -= 1.0;
+            return true;
+        }
+
+        // A bucket that has refilled completely behaves exactly like a new one
+        boolean isIdle(long now) {
+            return tokens + (now - lastRefill) * ratePerNano >= burst;
+        }
+    }
+
+    private final int capacity;
+    private final double requestsPerSecond;
+    private final int burst;
+
+    private final TreeSet<Request<?>> queue = new TreeSet<>(
+        Comparator.<Request<?>, Priority>comparing(r -> r.priority).thenComparingLong(r -> r.sequence));
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final HashMap<String, RateLimiter> limiters = new HashMap<>();
+    private final Thread[] workers;
+    private int limiterSweepSize = LIMITER_SWEEP_SIZE;
+    private long nextSequence;
+    private boolean shutdown;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder rejectedFull = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder dequeued = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public BookingRequestQueue(int capacity, int workerCount, double requestsPerSecondPerClient, int burstPerClient) {
+        if (capacity <= 0 || workerCount <= 0 || requestsPerSecondPerClient <= 0 || burstPerClient <= 0) {
+            throw new IllegalArgumentException("Capacity, workers, rate and burst must be positive");
+        }
+        this.capacity = capacity;
+        this.requestsPerSecond = requestsPerSecondPerClient;
+        this.burst = burstPerClient;
+
+        workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Thread(this::workLoop, "booking-worker-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    public <T> Submission<T> submit(String clientId, Priority priority, Duration timeout, Callable<T> task) {
+        if (clientId == null || priority == null || task == null) {
+            throw new IllegalArgumentException("Client, priority and task are required");
+        }
+        if (timeout == null || timeout.isNegative()) {
+            throw new IllegalArgumentException("Timeout must be zero or positive");
+        }
+        // Timeouts too long to count in nanoseconds never expire
+        long timeoutNanos = timeout.compareTo(MAX_TIMEOUT) >= 0 ? Long.MAX_VALUE : timeout.toNanos();
+
+        ArrayList<Request<?>> expired = new ArrayList<>();
+        Request<?> evicted = null;
+        Request<T> request = null;
+        Admission refusal = null;
+        int depth = 0;
+        lock.lock();
+        try {
+            // Read under the lock so token buckets never see time go backwards
+            long now = System.nanoTime();
+            if (shutdown) {
+                return rejected(Admission.SHUT_DOWN);
+            }
+
+            // Requests nobody waits for any more make room before anything live is shed
+            boolean full = queue.size() >= capacity;
+            if (full) {
+                queue.removeIf(queued -> queued.deadline < now && expired.add(queued));
+                full = queue.size() >= capacity;
+            }
+
+            // A full queue only admits a request by shedding a lower priority one, and only
+            // requests the queue would take spend a token
+            if (full && queue.last().priority.compareTo(priority) <= 0) {
+                rejectedFull.increment();
+                refusal = Admission.QUEUE_FULL;
+            } else if (!limiterFor(clientId, now).tryAcquire(now)) {
+                rateLimited.increment();
+                refusal = Admission.RATE_LIMITED;
+            } else {
+                if (full) {
+                    evicted = queue.pollLast();
+                }
+                long deadline = now + timeoutNanos;
+                request = new Request<>(priority, nextSequence++, now, deadline < now ? Long.MAX_VALUE : deadline, task);
+                queue.add(request);
+                depth = queue.size();
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (Request<?> late : expired) {
+            shed.increment();
+            late.result.completeExceptionally(new TimeoutException("Request deadline passed while queued"));
+        }
+        if (evicted != null) {
+            shed.increment();
+            evicted.result.completeExceptionally(
+                new RejectedExecutionException("Request shed in favour of a higher priority request"));
+        }
+        if (refusal != null) {
+            return rejected(refusal);
+        }
+
+        accepted.increment();
+        Admission admission = depth >= capacity * HIGH_WATERMARK ? Admission.ACCEPTED_NEAR_CAPACITY : Admission.ACCEPTED;
+        return new Submission<>(admission, request.result);
+    }
+
+    // Called with the lock held
+    private RateLimiter limiterFor(String clientId, long now) {
+        RateLimiter limiter = limiters.get(clientId);
+        if (limiter == null) {
+            if (limiters.size() >= limiterSweepSize) {
+                limiters.values().removeIf(idle -> idle.isIdle(now));
+                limiterSweepSize = Math.max(LIMITER_SWEEP_SIZE, limiters.size() * 2);
+            }
+            limiter = new RateLimiter(requestsPerSecond, burst, now);
+            limiters.put(clientId, limiter);
+        }
+        return limiter;
+    }
+
+    private static <T> Submission<T> rejected(Admission admission) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        result.completeExceptionally(new RejectedExecutionException("Booking request rejected: " + admission));
+        return new Submission<>(admission, result);
+    }
+
+    private void workLoop() {
+        while (true) {
+            Request<?> request;
+            lock.lock();
+            try {
+                while (queue.isEmpty() && !shutdown) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (queue.isEmpty()) {
+                    return;
+                }
+                request = queue.pollFirst();
+            } finally {
+                lock.unlock();
+            }
+
+            long now = System.nanoTime();
+            long waited = now - request.enqueuedAt;
+            dequeued.increment();
+            totalWaitNanos.add(waited);
+            maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+            // Nobody is waiting for an answer past its deadline, so don't spend a worker on it
+            if (now > request.deadline) {
+                shed.increment();
+                request.result.completeExceptionally(new TimeoutException("Request deadline passed while queued"));
+                continue;
+            }
+
+            request.run();
+            completed.increment();
+        }
+    }
+
+    // Stops accepting requests; queued requests are still processed before the workers exit
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean awaitTermination(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        for (Thread worker : workers) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedJoin(worker, remaining);
+            if (worker.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isUnderPressure() {
+        return getQueueDepth() >= capacity * HIGH_WATERMARK;
+    }
+
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+
+    public long getRateLimitedCount() {
+        return rateLimited.sum();
+    }
+
+    public long getRejectedFullCount() {
+        return rejectedFull.sum();
+    }
+
+    public long getShedCount() {
+        return shed.sum();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public double getAverageWaitMillis() {
+        long count = dequeued.sum();
+        return count == 0 ? 0.0 : totalWaitNanos.sum() / (count * 1_000_000.0);
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("depth=%d accepted=%d completed=%d rateLimited=%d full=%d shed=%d avgWait=%.2fms maxWait=%.2fms",
+            getQueueDepth(), getAcceptedCount(), getCompletedCount(), getRateLimitedCount(),
+            getRejectedFullCount(), getShedCount(), getAverageWaitMillis(), getMaxWaitMillis());
+    }
+}
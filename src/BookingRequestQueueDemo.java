@@ -0,0 +1,188 @@
+import java.time.*;
+import java.time.temporal.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Exercises BookingRequestQueue admission control and reports each behaviour as PASS or FAIL:
+// priority order, shedding when full, deadline shedding, timeout validation, per-client rate
+// limits and worker survival when a task throws an Error. Exits with status 1 if any check fails.
+// Usage: java BookingRequestQueueDemo
+public class BookingRequestQueueDemo {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        priorityOrder();
+        sheddingWhenFull();
+        deadlineShedding();
+        timeouts();
+        rateLimits();
+        workerSurvivesErrors();
+        System.out.println(failures == 0 ? "All checks passed" : failures + " check(s) failed");
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static void priorityOrder() throws Exception {
+        BookingRequestQueue queue = new BookingRequestQueue(10, 1, 1000, 100);
+        CountDownLatch release = occupyWorker(queue);
+        List<String> served = Collections.synchronizedList(new ArrayList<>());
+        ArrayList<CompletableFuture<String>> results = new ArrayList<>();
+        results.add(submit(queue, "api", BookingRequestQueue.Priority.BULK_API, () -> record(served, "bulk")));
+        results.add(submit(queue, "kiosk", BookingRequestQueue.Priority.KIOSK, () -> record(served, "kiosk")));
+        results.add(submit(queue, "gate", BookingRequestQueue.Priority.GATE, () -> record(served, "gate")));
+        release.countDown();
+        for (CompletableFuture<String> result : results) {
+            result.get(5, TimeUnit.SECONDS);
+        }
+        check("gates, then kiosks, then bulk API", served.equals(Arrays.asList("gate", "kiosk", "bulk")), served);
+        stop(queue);
+    }
+
+    private static void sheddingWhenFull() throws Exception {
+        BookingRequestQueue queue = new BookingRequestQueue(2, 1, 1000, 100);
+        CountDownLatch release = occupyWorker(queue);
+        BookingRequestQueue.Submission<String> first =
+            queue.submit("api", BookingRequestQueue.Priority.BULK_API, TIMEOUT, () -> "first");
+        BookingRequestQueue.Submission<String> second =
+            queue.submit("api", BookingRequestQueue.Priority.BULK_API, TIMEOUT, () -> "second");
+        BookingRequestQueue.Submission<String> gate =
+            queue.submit("gate", BookingRequestQueue.Priority.GATE, TIMEOUT, () -> "gate");
+        BookingRequestQueue.Submission<String> third =
+            queue.submit("api", BookingRequestQueue.Priority.BULK_API, TIMEOUT, () -> "third");
+        release.countDown();
+
+        check("full queue admits a gate request", gate.isAccepted() && "gate".equals(gate.getResult().get(5, TimeUnit.SECONDS)),
+            gate.getAdmission());
+        check("latest bulk request is shed for it", failsWith(second.getResult(), RejectedExecutionException.class)
+            && "first".equals(first.getResult().get(5, TimeUnit.SECONDS)), queue);
+        check("full queue refuses equal priority", third.getAdmission() == BookingRequestQueue.Admission.QUEUE_FULL,
+            third.getAdmission());
+        stop(queue);
+    }
+
+    private static void deadlineShedding() throws Exception {
+        BookingRequestQueue queue = new BookingRequestQueue(10, 1, 1000, 100);
+        CountDownLatch release = occupyWorker(queue);
+        BookingRequestQueue.Submission<String> late =
+            queue.submit("kiosk", BookingRequestQueue.Priority.KIOSK, Duration.ofMillis(10), () -> "late");
+        Thread.sleep(50);
+        release.countDown();
+        check("request past its deadline is shed", failsWith(late.getResult(), TimeoutException.class), queue);
+        stop(queue);
+    }
+
+    private static void timeouts() throws Exception {
+        BookingRequestQueue queue = new BookingRequestQueue(2, 1, 1000, 100);
+        CountDownLatch release = occupyWorker(queue);
+        BookingRequestQueue.Submission<String> stale =
+            queue.submit("api", BookingRequestQueue.Priority.BULK_API, Duration.ofMillis(10), () -> "stale");
+        BookingRequestQueue.Submission<String> live =
+            queue.submit("api", BookingRequestQueue.Priority.BULK_API, TIMEOUT, () -> "live");
+        Thread.sleep(50);
+        BookingRequestQueue.Submission<String> forever =
+            queue.submit("gate", BookingRequestQueue.Priority.GATE, ChronoUnit.FOREVER.getDuration(), () -> "forever");
+        boolean nullRefused;
+        try {
+            queue.submit("gate", BookingRequestQueue.Priority.GATE, null, () -> "none");
+            nullRefused = false;
+        } catch (IllegalArgumentException e) {
+            nullRefused = true;
+        }
+        release.countDown();
+
+        check("full queue drops an expired request before a live one", failsWith(stale.getResult(), TimeoutException.class)
+            && "live".equals(live.getResult().get(5, TimeUnit.SECONDS)), queue);
+        check("timeout beyond nanosecond range never expires",
+            forever.isAccepted() && "forever".equals(forever.getResult().get(5, TimeUnit.SECONDS)), forever.getAdmission());
+        check("missing timeout is refused", nullRefused, queue);
+        stop(queue);
+    }
+
+    private static void rateLimits() throws Exception {
+        BookingRequestQueue queue = new BookingRequestQueue(1, 1, 0.01, 2);
+        CountDownLatch release = occupyWorker(queue);
+
+        // Queue-full rejections must not use up the client's tokens
+        queue.submit("filler", BookingRequestQueue.Priority.GATE, TIMEOUT, () -> "filler");
+        for (int i = 0; i < 3; i++) {
+            queue.submit("kiosk", BookingRequestQueue.Priority.KIOSK, TIMEOUT, () -> "refused");
+        }
+        release.countDown();
+        while (queue.getQueueDepth() > 0) {
+            Thread.sleep(1);
+        }
+
+        BookingRequestQueue.Admission[] admissions = new BookingRequestQueue.Admission[3];
+        for (int i = 0; i < admissions.length; i++) {
+            admissions[i] = queue.submit("kiosk", BookingRequestQueue.Priority.KIOSK, TIMEOUT, () -> "ok").getAdmission();
+            while (queue.getQueueDepth() > 0) {
+                Thread.sleep(1);
+            }
+        }
+        check("burst of 2 admitted after queue-full refusals",
+            admissions[0] != BookingRequestQueue.Admission.RATE_LIMITED
+                && admissions[1] != BookingRequestQueue.Admission.RATE_LIMITED, Arrays.toString(admissions));
+        check("third request is rate limited", admissions[2] == BookingRequestQueue.Admission.RATE_LIMITED, admissions[2]);
+        check("other clients are unaffected", queue.submit("gate", BookingRequestQueue.Priority.GATE, TIMEOUT,
+            () -> "ok").isAccepted(), queue);
+        stop(queue);
+    }
+
+    private static void workerSurvivesErrors() throws Exception {
+        BookingRequestQueue queue = new BookingRequestQueue(10, 1, 1000, 100);
+        CompletableFuture<String> failing = submit(queue, "kiosk", BookingRequestQueue.Priority.KIOSK, () -> {
+            throw new AssertionError("broken task");
+        });
+        CompletableFuture<String> next = submit(queue, "kiosk", BookingRequestQueue.Priority.KIOSK, () -> "next");
+        check("Error fails only its own request", failsWith(failing, AssertionError.class)
+            && "next".equals(next.get(5, TimeUnit.SECONDS)), queue);
+        stop(queue);
+    }
+
+    // Keeps the only worker busy until the returned latch is released
+    private static CountDownLatch occupyWorker(BookingRequestQueue queue) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        queue.submit("setup", BookingRequestQueue.Priority.GATE, TIMEOUT, () -> {
+            started.countDown();
+            release.await();
+            return null;
+        });
+        started.await();
+        return release;
+    }
+
+    private static CompletableFuture<String> submit(BookingRequestQueue queue, String client,
+                                                    BookingRequestQueue.Priority priority, Callable<String> task) {
+        return queue.submit(client, priority, TIMEOUT, task).getResult();
+    }
+
+    private static String record(List<String> served, String name) {
+        served.add(name);
+        return name;
+    }
+
+    private static boolean failsWith(CompletableFuture<?> result, Class<? extends Throwable> type) {
+        try {
+            result.get(5, TimeUnit.SECONDS);
+            return false;
+        } catch (ExecutionException e) {
+            return type.isInstance(e.getCause());
+        } catch (InterruptedException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    private static void stop(BookingRequestQueue queue) throws InterruptedException {
+        queue.shutdown();
+        queue.awaitTermination(Duration.ofSeconds(5));
+    }
+
+    private static void check(String name, boolean passed, Object detail) {
+        if (!passed) {
+            failures++;
+        }
+        System.out.printf("%s  %s (%s)%n", passed ? "PASS" : "FAIL", name, detail);
+    }
+}
@@ -0,0 +1,65 @@
+import java.nio.charset.*;
+import java.util.*;
+
+// Maps keys to nodes so that adding or removing one of n nodes only moves about 1/n of the keys.
+// Each node is placed at several points (virtual nodes) to even out the share each one owns.
+public class ConsistentHashRing<T> {
+
+    private final int virtualNodes;
+    private final TreeMap<Long, T> ring = new TreeMap<>();
+    private final Set<T> nodes = new LinkedHashSet<>();
+
+    public ConsistentHashRing(int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("At least one virtual node per node is required");
+        }
+        this.virtualNodes = virtualNodes;
+    }
+
+    public synchronized void add(T node) {
+        if (!nodes.add(node)) {
+            return;
+        }
+        for (int i = 0; i < virtualNodes; i++) {
+            ring.put(pointOf(node, i), node);
+        }
+    }
+
+    public synchronized void remove(T node) {
+        if (!nodes.remove(node)) {
+            return;
+        }
+        for (int i = 0; i < virtualNodes; i++) {
+            ring.remove(pointOf(node, i), node);
+        }
+    }
+
+    public synchronized T nodeFor(long key) {
+        if (ring.isEmpty()) {
+            throw new IllegalStateException("No nodes on the ring");
+        }
+        Map.Entry<Long, T> entry = ring.ceilingEntry(mix(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public synchronized List<T> getNodes() {
+        return new ArrayList<>(nodes);
+    }
+
+    private static long pointOf(Object node, int replica) {
+        // FNV-1a over the node name, then mixed so nearby names land far apart
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : (node + "#" + replica).getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // SplitMix64 finaliser; train keys are dense, so they must be spread before lookup
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+        x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+        return x ^ (x >>> 31);
+    }
+}
@@ -0,0 +1,259 @@
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+public class DepartureBoardPublisher implements AutoCloseable {
+
+    public enum UpdateType {
+        ENTERED,      // train came into the board window
+        DEPARTED,     // train left the station
+        WITHDRAWN,    // train left the window without departing, e.g. the clock was moved back
+        LOAD_CHANGED, // booked passengers on the train changed
+        RESYNC        // updates for this board were dropped; replace it with snapshot(station)
+    }
+
+    public static class Update {
+        private final UpdateType type;
+        private final int station;
+        private final int nextStation;
+        private final LocalTime departure;
+        private final int load;
+
+        Update(UpdateType type, int station, int nextStation, LocalTime departure, int load) {
+            this.type = type;
+            this.station = station;
+            this.nextStation = nextStation;
+            this.departure = departure;
+            this.load = load;
+        }
+
+        public UpdateType getType() {
+            return type;
+        }
+
+        public int getStation() {
+            return station;
+        }
+
+        public int getNextStation() {
+            return nextStation;
+        }
+
+        public LocalTime getDeparture() {
+            return departure;
+        }
+
+        public int getLoad() {
+            return load;
+        }
+
+        @Override
+        public String toString() {
+            if (type == UpdateType.RESYNC) {
+                return type + " " + station;
+            }
+            return String.format("%s %d->%d %s load=%d", type, station, nextStation, departure, load);
+        }
+    }
+
+    // Stands between a publisher and one board. When the board's buffer overflows, the next update
+    // it takes is replaced by RESYNC, because the board cannot be patched back from what it missed.
+    // Updates after the RESYNC may repeat what a fresh snapshot already shows.
+    private static class BoardSubscriber implements Flow.Subscriber<Update> {
+        private final int station;
+        private final Flow.Subscriber<? super Update> board;
+        private final AtomicBoolean stale = new AtomicBoolean();
+
+        BoardSubscriber(int station, Flow.Subscriber<? super Update> board) {
+            this.station = station;
+            this.board = board;
+        }
+
+        void markStale() {
+            stale.set(true);
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            board.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(Update update) {
+            board.onNext(stale.getAndSet(false) ? new Update(UpdateType.RESYNC, station, -1, null, 0) : update);
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            board.onError(error);
+        }
+
+        @Override
+        public void onComplete() {
+            board.onComplete();
+        }
+    }
+
+    private final MetroNetwork network;
+    private final int windowMinutes;
+    private final int bufferCapacity;
+    private final Executor executor;
+
+    // One publisher per station, shared by every board showing that station
+    private final ConcurrentHashMap<Integer, SubmissionPublisher<Update>> publishers = new ConcurrentHashMap<>();
+    // Booked passengers keyed by train (from, to, departure minute)
+    private final ConcurrentHashMap<Long, Integer> loads = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+
+    private int windowStart = -1;
+    private int windowEnd = -1;
+    private boolean closed;
+
+    public DepartureBoardPublisher(MetroNetwork network, int windowMinutes) {
+        this(network, windowMinutes, Flow.defaultBufferSize(), ForkJoinPool.commonPool());
+    }
+
+    public DepartureBoardPublisher(MetroNetwork network, int windowMinutes, int bufferCapacity, Executor executor) {
+        this.network = network;
+        this.windowMinutes = windowMinutes;
+        this.bufferCapacity = bufferCapacity;
+        this.executor = executor;
+    }
+
+    // Returns the current board and delivers every later change to the subscriber. Both happen
+    // under the lock that advanceTo and recordBoarding take, so no update falls between them.
+    public synchronized ArrayList<Update> subscribe(int station, Flow.Subscriber<? super Update> subscriber) {
+        if (closed) {
+            throw new IllegalStateException("Departure board publisher is closed");
+        }
+        publishers.computeIfAbsent(station, s -> new SubmissionPublisher<>(executor, bufferCapacity))
+                  .subscribe(new BoardSubscriber(station, subscriber));
+        return snapshot(station);
+    }
+
+    public synchronized ArrayList<Update> snapshot(int station) {
+        ArrayList<Update> board = new ArrayList<>();
+        if (windowStart < 0) {
+            return board;
+        }
+        for (int next : network.neighbours(station)) {
+            for (int minute : MetroNetwork.departuresBetween(windowStart, windowEnd, network.headway(station, next))) {
+                board.add(update(UpdateType.ENTERED, station, next, minute));
+            }
+        }
+        board.sort(Comparator.comparing(Update::getDeparture));
+        return board;
+    }
+
+    // Moves the board window to the given time and publishes what changed. The window diff
+    // depends only on the headway, so it is computed once per headway in use per tick,
+    // independent of how many boards are subscribed.
+    public synchronized void advanceTo(LocalTime now) {
+        if (closed) {
+            return;
+        }
+        int start = MetroNetwork.toMinute(now);
+        int end = start + windowMinutes;
+        if (start == windowStart) {
+            return;
+        }
+
+        int previousStart = windowStart;
+        int previousEnd = windowEnd;
+        int[][] leaving = new int[MetroNetwork.MAX_HEADWAY + 1][];
+        int[][] entering = new int[MetroNetwork.MAX_HEADWAY + 1][];
+        windowStart = start;
+        windowEnd = end;
+
+        publishers.forEach((station, publisher) -> {
+            if (!publisher.hasSubscribers()) {
+                return;
+            }
+            for (int next : network.neighbours(station)) {
+                int headway = network.headway(station, next);
+                if (entering[headway] == null) {
+                    int[] current = MetroNetwork.departuresBetween(start, end, headway);
+                    if (previousStart < 0) {
+                        leaving[headway] = new int[0];
+                        entering[headway] = current;
+                    } else {
+                        int[] previous = MetroNetwork.departuresBetween(previousStart, previousEnd, headway);
+                        leaving[headway] = outside(previous, start, end);
+                        entering[headway] = outside(current, previousStart, previousEnd);
+                    }
+                }
+
+                for (int minute : leaving[headway]) {
+                    UpdateType type = minute < start ? UpdateType.DEPARTED : UpdateType.WITHDRAWN;
+                    offer(publisher, update(type, station, next, minute));
+                }
+                for (int minute : entering[headway]) {
+                    offer(publisher, update(UpdateType.ENTERED, station, next, minute));
+                }
+            }
+        });
+
+        // Departed trains no longer need their load
+        loads.keySet().removeIf(key -> MetroNetwork.trainMinute(key) < start);
+    }
+
+    public synchronized void recordBoarding(int from, int to, LocalTime departure, int passengers) {
+        int minute = MetroNetwork.toMinute(departure);
+        int load = loads.merge(network.trainKey(from, to, minute), passengers, Integer::sum);
+
+        SubmissionPublisher<Update> publisher = publishers.get(from);
+        if (publisher != null && minute >= windowStart && minute <= windowEnd) {
+            offer(publisher, new Update(UpdateType.LOAD_CHANGED, from, to, departure, load));
+        }
+    }
+
+    // Every outbound and return leg of a confirmed booking
+    public void recordBooking(Booking booking) {
+        recordLegs(booking.getPath(), booking.getLegs(), booking.getTotalPassengers());
+        if (booking.isRoundTrip() && booking.getReturnLegs() != null) {
+            recordLegs(booking.getReturnPath(), booking.getReturnLegs(), booking.getTotalPassengers());
+        }
+    }
+
+    public int getLoad(int from, int to, LocalTime departure) {
+        return loads.getOrDefault(network.trainKey(from, to, MetroNetwork.toMinute(departure)), 0);
+    }
+
+    // Updates discarded because a board's buffer was full
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        publishers.values().forEach(SubmissionPublisher::close);
+        publishers.clear();
+    }
+
+    private void recordLegs(ArrayList<Integer> path, ArrayList<LocalTime[]> legs, int passengers) {
+        for (int i = 0; i < legs.size(); i++) {
+            recordBoarding(path.get(i), path.get(i + 1), legs.get(i)[0], passengers);
+        }
+    }
+
+    // A slow board loses updates rather than stalling the clock for every other board, and is
+    // told to resync once it catches up
+    private void offer(SubmissionPublisher<Update> publisher, Update update) {
+        publisher.offer(update, (subscriber, item) -> {
+            dropped.increment();
+            ((BoardSubscriber) subscriber).markStale();
+            return false;
+        });
+    }
+
+    private Update update(UpdateType type, int station, int next, int minute) {
+        return new Update(type, station, next, LocalTime.ofSecondOfDay(minute * 60L),
+            loads.getOrDefault(network.trainKey(station, next, minute), 0));
+    }
+
+    private static int[] outside(int[] minutes, int start, int end) {
+        return Arrays.stream(minutes).filter(m -> m < start || m > end).toArray();
+    }
+}
@@ -0,0 +1,201 @@
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Non-blocking connections to any number of inventory shards. Callers get a future per request;
+// one selector thread writes queued requests and matches responses back by request id, so many
+// requests can be in flight on each connection at once.
+public class InventoryClient implements Closeable {
+
+    private static class Connection {
+        final SocketChannel channel;
+        final ConcurrentLinkedQueue<ByteBuffer> outbox = new ConcurrentLinkedQueue<>();
+        final Set<Long> outstanding = ConcurrentHashMap.newKeySet();
+        final ByteBuffer in = ByteBuffer.allocate(InventoryProtocol.RESPONSE_SIZE * 256);
+        SelectionKey key;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private final Selector selector;
+    private final Thread ioThread;
+    private final ConcurrentHashMap<InetSocketAddress, Connection> connections = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, CompletableFuture<InventoryProtocol.Response>> pending =
+        new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Connection> ready = new ConcurrentLinkedQueue<>();
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private volatile boolean running = true;
+
+    public InventoryClient() throws IOException {
+        selector = Selector.open();
+        ioThread = new Thread(this::loop, "inventory-client");
+        ioThread.setDaemon(true);
+        ioThread.start();
+    }
+
+    public void connect(InetSocketAddress address) throws IOException {
+        if (connections.containsKey(address)) {
+            return;
+        }
+        SocketChannel channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.configureBlocking(false);
+        Connection connection = new Connection(channel);
+        if (connections.putIfAbsent(address, connection) != null) {
+            channel.close();
+            return;
+        }
+        ready.add(connection);
+        selector.wakeup();
+    }
+
+    public CompletableFuture<InventoryProtocol.Response> send(InetSocketAddress address, InventoryProtocol.Op op,
+                                                             long holdId, long train, int seats) {
+        CompletableFuture<InventoryProtocol.Response> result = new CompletableFuture<>();
+        Connection connection = connections.get(address);
+        if (connection == null || !running) {
+            result.completeExceptionally(new IOException("Not connected to shard " + address));
+            return result;
+        }
+
+        long requestId = nextRequestId.incrementAndGet();
+        ByteBuffer frame = ByteBuffer.allocate(InventoryProtocol.REQUEST_SIZE);
+        InventoryProtocol.writeRequest(frame, new InventoryProtocol.Request(op, requestId, holdId, train, seats));
+        frame.flip();
+
+        pending.put(requestId, result);
+        connection.outstanding.add(requestId);
+        // However the request ends, including a caller giving up on it, it is no longer tracked
+        result.whenComplete((response, error) -> {
+            pending.remove(requestId);
+            connection.outstanding.remove(requestId);
+        });
+        connection.outbox.add(frame);
+        if (!connection.channel.isOpen() && pending.remove(requestId) != null) {
+            // The connection failed while this request was being queued
+            result.completeExceptionally(new IOException("Connection to shard " + address + " lost"));
+            return result;
+        }
+        ready.add(connection);
+        selector.wakeup();
+        return result;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            ioThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void loop() {
+        try {
+            while (running) {
+                Connection connection;
+                while ((connection = ready.poll()) != null) {
+                    if (connection.key == null) {
+                        try {
+                            connection.key = connection.channel.register(selector, SelectionKey.OP_READ, connection);
+                        } catch (ClosedChannelException e) {
+                            fail(connection, e);
+                            continue;
+                        }
+                    }
+                    if (connection.key.isValid() && !connection.outbox.isEmpty()) {
+                        connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    }
+                }
+
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    Connection target = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            read(target);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(target);
+                        }
+                    } catch (IOException e) {
+                        fail(target, e);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Inventory client stopped: " + e.getMessage());
+        } finally {
+            for (Connection connection : connections.values()) {
+                fail(connection, new IOException("Inventory client closed"));
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // Shutting down anyway
+            }
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        if (connection.channel.read(connection.in) < 0) {
+            throw new EOFException("Shard closed the connection");
+        }
+        connection.in.flip();
+        while (connection.in.remaining() >= InventoryProtocol.RESPONSE_SIZE) {
+            InventoryProtocol.Response response = InventoryProtocol.readResponse(connection.in);
+            connection.outstanding.remove(response.requestId);
+            CompletableFuture<InventoryProtocol.Response> result = pending.remove(response.requestId);
+            if (result != null) {
+                result.complete(response);
+            }
+        }
+        connection.in.compact();
+    }
+
+    private void write(Connection connection) throws IOException {
+        ByteBuffer frame;
+        while ((frame = connection.outbox.peek()) != null) {
+            connection.channel.write(frame);
+            if (frame.hasRemaining()) {
+                return; // socket buffer full; stay interested in writes
+            }
+            connection.outbox.poll();
+        }
+        connection.key.interestOps(SelectionKey.OP_READ);
+        // A request queued between the last poll and the interest change must not wait for a read
+        if (!connection.outbox.isEmpty()) {
+            connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void fail(Connection connection, IOException cause) {
+        if (connection.key != null) {
+            connection.key.cancel();
+        }
+        try {
+            connection.channel.close();
+        } catch (IOException ignored) {
+            // Already failing
+        }
+        connections.values().remove(connection);
+        for (Long requestId : connection.outstanding) {
+            CompletableFuture<InventoryProtocol.Response> result = pending.remove(requestId);
+            if (result != null) {
+                result.completeExceptionally(cause);
+            }
+        }
+        connection.outstanding.clear();
+    }
+}
@@ -0,0 +1,120 @@
+import java.nio.*;
+import java.time.*;
+
+// Wire format between inventory shards and booking coordinators. Every message has a fixed
+// size, so frames need no length prefix and a reader only waits for a whole frame:
+//
+//   request   op:1  requestId:8  holdId:8  train:8  seats:2     (27 bytes)
+//   response  status:1  requestId:8  available:4                 (13 bytes)
+//
+// A train is one departure on one directed segment on one service date, packed into a long by
+// trainKey, so the same departure on different days is a different train.
+public final class InventoryProtocol {
+
+    public static final int REQUEST_SIZE = 27;
+    public static final int RESPONSE_SIZE = 13;
+
+    static final int MAX_STATION = (1 << 19) - 1;
+    static final long MAX_SERVICE_DAY = (1 << 15) - 1; // 2059-09-18
+
+    public enum Op {
+        HOLD,    // reserve seats on a train under a hold id
+        COMMIT,  // turn every seat held under the hold id into a booking
+        RELEASE, // drop every seat held under the hold id
+        QUERY    // seats still free on a train
+    }
+
+    public enum Status {
+        OK,
+        REJECTED,     // not enough free seats
+        UNKNOWN_HOLD, // the hold expired or was never made on this shard
+        ERROR         // malformed request
+    }
+
+    public static class Request {
+        final Op op;
+        final long requestId;
+        final long holdId;
+        final long train;
+        final int seats;
+
+        Request(Op op, long requestId, long holdId, long train, int seats) {
+            this.op = op;
+            this.requestId = requestId;
+            this.holdId = holdId;
+            this.train = train;
+            this.seats = seats;
+        }
+    }
+
+    public static class Response {
+        final Status status;
+        final long requestId;
+        final int available;
+
+        Response(Status status, long requestId, int available) {
+            this.status = status;
+            this.requestId = requestId;
+            this.available = available;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public int getAvailable() {
+            return available;
+        }
+    }
+
+    private InventoryProtocol() {
+    }
+
+    // Days since 1970 in the top 15 bits, then 19 bits for each station index and 11 for the
+    // minute of the day
+    public static long trainKey(LocalDate date, int from, int to, LocalTime departure) {
+        long day = date.toEpochDay();
+        if (day < 0 || day > MAX_SERVICE_DAY || from < 0 || from > MAX_STATION || to < 0 || to > MAX_STATION) {
+            throw new IllegalArgumentException("Train cannot be keyed: " + from + "->" + to + " on " + date);
+        }
+        return day << 49 | (long) from << 30 | (long) to << 11 | MetroNetwork.toMinute(departure);
+    }
+
+    static long serviceDay(long train) {
+        return train >>> 49;
+    }
+
+    static void writeRequest(ByteBuffer buffer, Request request) {
+        buffer.put((byte) request.op.ordinal())
+              .putLong(request.requestId)
+              .putLong(request.holdId)
+              .putLong(request.train)
+              .putShort((short) request.seats);
+    }
+
+    // An unknown op decodes with a null op, so the shard can answer ERROR instead of dropping the link
+    static Request readRequest(ByteBuffer buffer) {
+        int op = buffer.get();
+        long requestId = buffer.getLong();
+        long holdId = buffer.getLong();
+        long train = buffer.getLong();
+        int seats = buffer.getShort();
+        if (op < 0 || op >= Op.values().length) {
+            return new Request(null, requestId, holdId, train, seats);
+        }
+        return new Request(Op.values()[op], requestId, holdId, train, seats);
+    }
+
+    static void writeResponse(ByteBuffer buffer, Response response) {
+        buffer.put((byte) response.status.ordinal())
+              .putLong(response.requestId)
+              .putInt(response.available);
+    }
+
+    static Response readResponse(ByteBuffer buffer) {
+        Status status = Status.values()[buffer.get()];
+        long requestId = buffer.getLong();
+        int available = buffer.getInt();
+        return new Response(status, requestId, available);
+    }
+}
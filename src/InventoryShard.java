@@ -0,0 +1,277 @@
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.time.*;
+import java.util.*;
+
+// One partition of the seat inventory, served over non-blocking sockets. A single selector
+// thread owns all state, so trains and holds need no locking. Holds that are neither committed
+// nor released expire, so a coordinator that dies between the two phases cannot strand seats.
+// Train keys carry their service date; trains of days that have ended are dropped.
+//
+// Usage: java InventoryShard [port] [seatsPerTrain]
+// Port 0 picks a free port; the chosen port is printed as "LISTENING <port>".
+public class InventoryShard implements Runnable, Closeable {
+
+    static final int DEFAULT_CAPACITY = 300; // seats per train
+    static final long HOLD_TIMEOUT_MILLIS = 30_000;
+    private static final int BUFFER_FRAMES = 256;
+    private static final int OUTPUT_LIMIT = InventoryProtocol.RESPONSE_SIZE * BUFFER_FRAMES * 16;
+
+    private static class Train {
+        int booked;
+        int held;
+    }
+
+    private static class Hold {
+        final ArrayList<long[]> seats = new ArrayList<>(); // train, seats
+        long expiresAt;
+    }
+
+    private static class Connection {
+        final ByteBuffer in = ByteBuffer.allocate(InventoryProtocol.REQUEST_SIZE * BUFFER_FRAMES);
+        ByteBuffer out = ByteBuffer.allocate(InventoryProtocol.RESPONSE_SIZE * BUFFER_FRAMES);
+    }
+
+    private final int capacity;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final HashMap<Long, Train> trains = new HashMap<>();
+    private final HashMap<Long, Hold> holds = new HashMap<>();
+    private final HashMap<Long, Long> committed = new HashMap<>(); // hold id, when it is forgotten
+    private long nextExpiry;
+    private long clearedBefore; // trains of earlier service days are gone
+    private volatile boolean running = true;
+
+    public InventoryShard(int port, int capacity) throws IOException {
+        this.capacity = capacity;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select(1000);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            if (key.isReadable()) {
+                                read(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(key);
+                            }
+                        }
+                    } catch (IOException e) {
+                        disconnect(key);
+                    }
+                }
+                long now = System.currentTimeMillis();
+                if (now >= nextExpiry) {
+                    expireHolds(now);
+                    dropPastDays(LocalDate.now().toEpochDay());
+                    nextExpiry = now + 1000;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Inventory shard stopped: " + e.getMessage());
+        } finally {
+            closeQuietly();
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection());
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        if (channel.read(connection.in) < 0) {
+            disconnect(key);
+            return;
+        }
+
+        connection.in.flip();
+        // Leave further requests buffered once the output is over its limit; write() resumes reading
+        while (connection.in.remaining() >= InventoryProtocol.REQUEST_SIZE
+                && connection.out.position() <= OUTPUT_LIMIT) {
+            InventoryProtocol.Request request = InventoryProtocol.readRequest(connection.in);
+            reserveOutput(connection);
+            InventoryProtocol.writeResponse(connection.out, handle(request, System.currentTimeMillis()));
+        }
+        connection.in.compact();
+
+        if (connection.out.position() > 0) {
+            write(key);
+        }
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        connection.out.flip();
+        channel.write(connection.out);
+        connection.out.compact();
+        // Only ask for write readiness while a slow reader leaves responses behind, and stop
+        // taking requests from a client that has let too many responses pile up
+        int pending = connection.out.position();
+        key.interestOps((pending > OUTPUT_LIMIT ? 0 : SelectionKey.OP_READ)
+            | (pending > 0 ? SelectionKey.OP_WRITE : 0));
+    }
+
+    private static void reserveOutput(Connection connection) {
+        if (connection.out.remaining() < InventoryProtocol.RESPONSE_SIZE) {
+            ByteBuffer larger = ByteBuffer.allocate(connection.out.capacity() * 2);
+            connection.out.flip();
+            larger.put(connection.out);
+            connection.out = larger;
+        }
+    }
+
+    InventoryProtocol.Response handle(InventoryProtocol.Request request, long now) {
+        if (request.op == null || request.seats < 0) {
+            return response(InventoryProtocol.Status.ERROR, request, 0);
+        }
+        switch (request.op) {
+            case HOLD: {
+                Train train = trains.computeIfAbsent(request.train, t -> new Train());
+                int free = capacity - train.booked - train.held;
+                if (request.seats > free) {
+                    return response(InventoryProtocol.Status.REJECTED, request, free);
+                }
+                train.held += request.seats;
+                Hold hold = holds.computeIfAbsent(request.holdId, h -> new Hold());
+                hold.seats.add(new long[]{request.train, request.seats});
+                hold.expiresAt = now + HOLD_TIMEOUT_MILLIS;
+                return response(InventoryProtocol.Status.OK, request, free - request.seats);
+            }
+            case COMMIT:
+            case RELEASE: {
+                Hold hold = holds.remove(request.holdId);
+                if (hold == null) {
+                    // A coordinator repeats a commit whose answer it never got
+                    boolean repeated = request.op == InventoryProtocol.Op.COMMIT && committed.containsKey(request.holdId);
+                    return response(repeated ? InventoryProtocol.Status.OK : InventoryProtocol.Status.UNKNOWN_HOLD,
+                        request, 0);
+                }
+                for (long[] seats : hold.seats) {
+                    Train train = trains.get(seats[0]);
+                    train.held -= (int) seats[1];
+                    if (request.op == InventoryProtocol.Op.COMMIT) {
+                        train.booked += (int) seats[1];
+                    }
+                }
+                if (request.op == InventoryProtocol.Op.COMMIT) {
+                    committed.put(request.holdId, now + HOLD_TIMEOUT_MILLIS);
+                }
+                return response(InventoryProtocol.Status.OK, request, 0);
+            }
+            case QUERY: {
+                Train train = trains.get(request.train);
+                int free = train == null ? capacity : capacity - train.booked - train.held;
+                return response(InventoryProtocol.Status.OK, request, free);
+            }
+            default:
+                return response(InventoryProtocol.Status.ERROR, request, 0);
+        }
+    }
+
+    private void expireHolds(long now) {
+        Iterator<Hold> iterator = holds.values().iterator();
+        while (iterator.hasNext()) {
+            Hold hold = iterator.next();
+            if (hold.expiresAt <= now) {
+                for (long[] seats : hold.seats) {
+                    trains.get(seats[0]).held -= (int) seats[1];
+                }
+                iterator.remove();
+            }
+        }
+        committed.values().removeIf(forgetAt -> forgetAt <= now);
+    }
+
+    // A train still under a hold is kept until a later pass, after the hold has ended
+    private void dropPastDays(long today) {
+        if (today <= clearedBefore) {
+            return;
+        }
+        boolean stillHeld = false;
+        Iterator<Map.Entry<Long, Train>> iterator = trains.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Train> entry = iterator.next();
+            if (InventoryProtocol.serviceDay(entry.getKey()) < today) {
+                if (entry.getValue().held == 0) {
+                    iterator.remove();
+                } else {
+                    stillHeld = true;
+                }
+            }
+        }
+        if (!stillHeld) {
+            clearedBefore = today;
+        }
+    }
+
+    private static InventoryProtocol.Response response(InventoryProtocol.Status status,
+                                                       InventoryProtocol.Request request, int available) {
+        return new InventoryProtocol.Response(status, request.requestId, available);
+    }
+
+    private static void disconnect(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // Already gone
+        }
+    }
+
+    private void closeQuietly() {
+        for (SelectionKey key : selector.keys()) {
+            disconnect(key);
+        }
+        try {
+            selector.close();
+            server.close();
+        } catch (IOException ignored) {
+            // Shutting down anyway
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_CAPACITY;
+        InventoryShard shard = new InventoryShard(port, capacity);
+        System.out.println("LISTENING " + shard.getPort());
+        System.out.flush();
+        shard.run();
+    }
+}
@@ -0,0 +1,117 @@
+import java.time.*;
+import java.util.concurrent.atomic.*;
+
+// Sources of the current time for booking logic. Code that needs "now" takes a java.time.Clock,
+// so the GUI, batch runs and simulations each use their own clock instead of shared static state.
+// Every clock here is safe to read from any thread:
+//
+//   realTime     the wall clock
+//   fixed        stands still at one time, e.g. the GUI test time
+//   accelerated  starts at a given time and runs a set number of times faster than the wall clock
+//   Manual       moved explicitly, e.g. by a discrete-event simulation
+public final class MetroClock {
+
+    private MetroClock() {
+    }
+
+    public static Clock realTime() {
+        return Clock.systemDefaultZone();
+    }
+
+    public static Clock fixed(LocalTime time) {
+        return fixed(LocalDate.now(), time);
+    }
+
+    public static Clock fixed(LocalDate date, LocalTime time) {
+        ZoneId zone = ZoneId.systemDefault();
+        return Clock.fixed(date.atTime(time).atZone(zone).toInstant(), zone);
+    }
+
+    public static Accelerated accelerated(LocalTime start, double speed) {
+        ZoneId zone = ZoneId.systemDefault();
+        return new Accelerated(Clock.systemUTC(), LocalDate.now().atTime(start).atZone(zone).toInstant(), speed, zone);
+    }
+
+    public static class Accelerated extends Clock {
+        private final Clock base;
+        private final Instant baseStart;
+        private final Instant start;
+        private final double speed;
+        private final ZoneId zone;
+
+        Accelerated(Clock base, Instant start, double speed, ZoneId zone) {
+            this(base, base.instant(), start, speed, zone);
+        }
+
+        private Accelerated(Clock base, Instant baseStart, Instant start, double speed, ZoneId zone) {
+            if (speed <= 0) {
+                throw new IllegalArgumentException("Clock speed must be positive");
+            }
+            this.base = base;
+            this.baseStart = baseStart;
+            this.start = start;
+            this.speed = speed;
+            this.zone = zone;
+        }
+
+        public double getSpeed() {
+            return speed;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return zone;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return new Accelerated(base, baseStart, start, speed, zone);
+        }
+
+        @Override
+        public Instant instant() {
+            long elapsed = Duration.between(baseStart, base.instant()).toNanos();
+            return start.plusNanos((long) (elapsed * speed));
+        }
+    }
+
+    public static class Manual extends Clock {
+        private final AtomicReference<Instant> now;
+        private final ZoneId zone;
+
+        public Manual(LocalDate date, LocalTime time) {
+            this(new AtomicReference<>(date.atTime(time).atZone(ZoneId.systemDefault()).toInstant()),
+                ZoneId.systemDefault());
+        }
+
+        // Views in other zones share the same time
+        private Manual(AtomicReference<Instant> now, ZoneId zone) {
+            this.now = now;
+            this.zone = zone;
+        }
+
+        // Never moves backwards, so concurrent callers cannot undo each other's progress
+        public void advanceTo(Instant time) {
+            now.accumulateAndGet(time, (current, next) -> next.isAfter(current) ? next : current);
+        }
+
+        public void advanceTo(LocalTime time) {
+            advanceTo(LocalDate.now(this).atTime(time).atZone(zone).toInstant());
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return zone;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return new Manual(now, zone);
+        }
+
+        @Override
+        public Instant instant() {
+            return now.get();
+        }
+    }
+}
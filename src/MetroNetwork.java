@@ -0,0 +1,414 @@
+import java.time.*;
+import java.util.*;
+import java.util.stream.IntStream;
+
+public class MetroNetwork {
+
+    static final int INFINITY = Integer.MAX_VALUE;
+    static final int TRAIN_SPEED = 30; // km/h
+    static final int STATION_WAIT_TIME = 10; // minutes
+    static final int MIN_TRANSFER_TIME = 5; // minutes
+    static final LocalTime FIRST_TRAIN = LocalTime.of(6, 0);
+    static final LocalTime LAST_TRAIN = LocalTime.of(20, 0);
+    static final int TRAIN_INTERVAL = 10; // default minutes between trains
+    static final int MAX_HEADWAY = 60; // longest supported minutes between trains
+    static final int SEARCH_WINDOW = 30; // minutes to search before and after desired time
+    static final int MAX_TRAIN_OPTIONS = 8;
+    static final int MINUTES_PER_DAY = 24 * 60;
+
+    private static final int FIRST_TRAIN_MINUTE = FIRST_TRAIN.toSecondOfDay() / 60;
+    private static final int LAST_TRAIN_MINUTE = LAST_TRAIN.toSecondOfDay() / 60;
+
+    // Every departure of the day in minutes since midnight, one index per headway and shared
+    // by all segments running at that headway
+    private static final int[][] DEPARTURES = buildDepartureIndex();
+
+    // Adjacency lists: for each station the neighbouring stations and, at the same position,
+    // the distance in km and the headway in minutes of that connection
+    private final String[] stationNames;
+    private final int[][] neighbours;
+    private final int[][] distances;
+    private final int[][] headways;
+    private final int[] degree;
+
+    public MetroNetwork(String[] stationNames) {
+        this.stationNames = stationNames.clone();
+        int size = stationNames.length;
+        neighbours = new int[size][];
+        distances = new int[size][];
+        headways = new int[size][];
+        degree = new int[size];
+    }
+
+    public static MetroNetwork createDefault() {
+        MetroNetwork network = new MetroNetwork(new String[]{"A", "B", "C", "D", "E", "F"});
+
+        // Add connections from the given matrix
+        network.addConnection(0, 1, 10); // A-B
+        network.addConnection(0, 2, 22); // A-C
+        network.addConnection(0, 4, 8);  // A-E
+        network.addConnection(1, 2, 15); // B-C
+        network.addConnection(1, 3, 9);  // B-D
+        network.addConnection(1, 5, 7);  // B-F
+        network.addConnection(2, 3, 9);  // C-D
+        network.addConnection(3, 4, 5);  // D-E
+        network.addConnection(3, 5, 12); // D-F
+        network.addConnection(4, 5, 16); // E-F
+        return network;
+    }
+
+    public void addConnection(int from, int to, int distance) {
+        addConnection(from, to, distance, TRAIN_INTERVAL);
+    }
+
+    public void addConnection(int from, int to, int distance, int headway) {
+        if (from == to || distance <= 0) {
+            throw new IllegalArgumentException("A connection needs two stations and a positive distance");
+        }
+        if (headway <= 0 || headway > MAX_HEADWAY) {
+            throw new IllegalArgumentException("Headway must be between 1 and " + MAX_HEADWAY + " minutes");
+        }
+        setEdge(from, to, distance, headway);
+        setEdge(to, from, distance, headway);
+    }
+
+    private void setEdge(int from, int to, int distance, int headway) {
+        int index = edgeIndex(from, to);
+        if (index < 0) {
+            if (neighbours[from] == null) {
+                neighbours[from] = new int[4];
+                distances[from] = new int[4];
+                headways[from] = new int[4];
+            } else if (degree[from] == neighbours[from].length) {
+                int capacity = degree[from] * 2;
+                neighbours[from] = Arrays.copyOf(neighbours[from], capacity);
+                distances[from] = Arrays.copyOf(distances[from], capacity);
+                headways[from] = Arrays.copyOf(headways[from], capacity);
+            }
+            index = degree[from]++;
+            neighbours[from][index] = to;
+        }
+        distances[from][index] = distance;
+        headways[from][index] = headway;
+    }
+
+    private int edgeIndex(int from, int to) {
+        for (int i = 0; i < degree[from]; i++) {
+            if (neighbours[from][i] == to) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int size() {
+        return stationNames.length;
+    }
+
+    public String[] getStationNames() {
+        return stationNames.clone();
+    }
+
+    public String stationName(int station) {
+        return stationNames[station];
+    }
+
+    public int connectionCount() {
+        return Arrays.stream(degree).sum() / 2;
+    }
+
+    // Distance in km, 0 for the same station and INFINITY when the stations are not connected
+    public int distance(int from, int to) {
+        if (from == to) {
+            return 0;
+        }
+        int index = edgeIndex(from, to);
+        return index < 0 ? INFINITY : distances[from][index];
+    }
+
+    public int headway(int from, int to) {
+        int index = edgeIndex(from, to);
+        return index < 0 ? TRAIN_INTERVAL : headways[from][index];
+    }
+
+    public int[] neighbours(int station) {
+        return degree[station] == 0 ? new int[0] : Arrays.copyOf(neighbours[station], degree[station]);
+    }
+
+    public int segmentMinutes(int from, int to) {
+        return travelMinutes(distance(from, to));
+    }
+
+    private static int travelMinutes(int distance) {
+        return (int) Math.ceil((distance / (double) TRAIN_SPEED) * 60);
+    }
+
+    private static int[][] buildDepartureIndex() {
+        int[][] index = new int[MAX_HEADWAY + 1][];
+        for (int headway = 1; headway <= MAX_HEADWAY; headway++) {
+            int count = (LAST_TRAIN_MINUTE - FIRST_TRAIN_MINUTE) / headway + 1;
+            int[] departures = new int[count];
+            for (int i = 0; i < count; i++) {
+                departures[i] = FIRST_TRAIN_MINUTE + i * headway;
+            }
+            index[headway] = departures;
+        }
+        return index;
+    }
+
+    // Index of the first departure at or after the given minute, departures.length if none
+    private static int firstDepartureIndex(int[] departures, int minute) {
+        int low = 0;
+        int high = departures.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (departures[mid] < minute) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Departure minutes within [fromMinute, toMinute] at the given headway, in order
+    public static int[] departuresBetween(int fromMinute, int toMinute, int headway) {
+        int[] departures = DEPARTURES[headway];
+        int start = firstDepartureIndex(departures, fromMinute);
+        int end = firstDepartureIndex(departures, toMinute + 1);
+        return start < end ? Arrays.copyOfRange(departures, start, end) : new int[0];
+    }
+
+    static int toMinute(LocalTime time) {
+        return time.toSecondOfDay() / 60 + (time.getSecond() > 0 || time.getNano() > 0 ? 1 : 0);
+    }
+
+    // One departure on one directed segment of this network, as a key for per-train state
+    public long trainKey(int from, int to, int minute) {
+        return ((long) from * size() + to) * MINUTES_PER_DAY + minute;
+    }
+
+    static int trainMinute(long trainKey) {
+        return (int) (trainKey % MINUTES_PER_DAY);
+    }
+
+    public ArrayList<LocalTime[]> getAvailableTrains(int from, int to, LocalTime desiredTime, LocalTime systemTime) {
+        ArrayList<LocalTime[]> trains = new ArrayList<>();
+        int[] departures = DEPARTURES[headway(from, to)];
+        int travelMinutes = segmentMinutes(from, to);
+
+        // Only search for trains starting from the desired time
+        LocalTime startWindow = desiredTime;
+        LocalTime endWindow = desiredTime.plusMinutes(SEARCH_WINDOW);
+
+        // Ensure we don't show trains before the current time
+        if (startWindow.isBefore(systemTime)) {
+            startWindow = systemTime;
+        }
+
+        // Walk the departure index from the first train at or after the window start
+        int optionsCount = 0;
+        for (int i = firstDepartureIndex(departures, toMinute(startWindow)); i < departures.length && optionsCount < MAX_TRAIN_OPTIONS; i++) {
+            LocalTime departure = LocalTime.ofSecondOfDay(departures[i] * 60L);
+            if (departure.isAfter(endWindow)) {
+                break;
+            }
+            LocalTime arrival = departure.plusMinutes(travelMinutes + STATION_WAIT_TIME);
+            if (!arrival.isAfter(LAST_TRAIN)) {
+                trains.add(new LocalTime[]{departure, arrival});
+                optionsCount++;
+            }
+        }
+
+        return trains;
+    }
+
+    // Earliest train on every remaining segment once the first leg is fixed, null if the chain breaks
+    private ArrayList<LocalTime[]> completeItinerary(ArrayList<Integer> path, LocalTime[] firstLeg, LocalTime systemTime) {
+        ArrayList<LocalTime[]> legs = new ArrayList<>();
+        legs.add(firstLeg);
+        for (int i = 1; i < path.size() - 1; i++) {
+            LocalTime readyTime = legs.get(i - 1)[1].plusMinutes(MIN_TRANSFER_TIME);
+            ArrayList<LocalTime[]> trains = getAvailableTrains(path.get(i), path.get(i + 1), readyTime, systemTime);
+            if (trains.isEmpty()) {
+                return null;
+            }
+            legs.add(trains.get(0));
+        }
+        return legs;
+    }
+
+    // Up to maxOptions itineraries along the path, one per departure of the first segment
+    public ArrayList<ArrayList<LocalTime[]>> planItineraries(ArrayList<Integer> path, LocalTime readyTime,
+                                                             int maxOptions, LocalTime systemTime) {
+        ArrayList<ArrayList<LocalTime[]>> itineraries = new ArrayList<>();
+        if (path.size() < 2) {
+            return itineraries;
+        }
+
+        for (LocalTime[] firstLeg : getAvailableTrains(path.get(0), path.get(1), readyTime, systemTime)) {
+            if (itineraries.size() >= maxOptions) {
+                break;
+            }
+            ArrayList<LocalTime[]> legs = completeItinerary(path, firstLeg, systemTime);
+            if (legs != null) {
+                itineraries.add(legs);
+            }
+        }
+        return itineraries;
+    }
+
+    // Return itineraries once the traveller has spent dwellMinutes at the destination
+    public ArrayList<ArrayList<LocalTime[]>> planReturnOptions(ArrayList<Integer> returnPath, LocalTime outboundArrival,
+                                                               int dwellMinutes, int maxOptions, LocalTime systemTime) {
+        // Trains do not run past midnight, so a dwell beyond the last train has no return
+        if (toMinute(outboundArrival) + dwellMinutes > LAST_TRAIN_MINUTE) {
+            return new ArrayList<>();
+        }
+        return planItineraries(returnPath, outboundArrival.plusMinutes(dwellMinutes), maxOptions, systemTime);
+    }
+
+    // Earliest arrival at every station, in minutes since midnight, when leaving origin at the
+    // departure time; unreachable stations keep INFINITY and the origin holds the departure minute
+    public int[] earliestArrivals(int origin, LocalTime departure) {
+        int size = size();
+        int[] arrivals = new int[size];
+        boolean[] settled = new boolean[size];
+        Arrays.fill(arrivals, INFINITY);
+        arrivals[origin] = toMinute(departure);
+
+        MinHeap heap = new MinHeap();
+        heap.push(arrivals[origin], origin);
+
+        while (!heap.isEmpty()) {
+            int station = heap.popStation();
+            if (settled[station]) continue;
+
+            settled[station] = true;
+            int earliest = arrivals[station];
+
+            // Changing trains costs the transfer time everywhere except at the origin
+            int readyMinute = station == origin ? earliest : earliest + MIN_TRANSFER_TIME;
+
+            for (int i = 0; i < degree[station]; i++) {
+                int next = neighbours[station][i];
+                if (settled[next]) continue;
+
+                int[] departures = DEPARTURES[headways[station][i]];
+                int index = firstDepartureIndex(departures, readyMinute);
+                if (index == departures.length) continue;
+
+                int arrival = departures[index] + travelMinutes(distances[station][i]) + STATION_WAIT_TIME;
+                if (arrival <= LAST_TRAIN_MINUTE && arrival < arrivals[next]) {
+                    arrivals[next] = arrival;
+                    heap.push(arrival, next);
+                }
+            }
+        }
+        return arrivals;
+    }
+
+    // One row of earliest arrivals per origin, computed in parallel
+    public int[][] earliestArrivals(int[] origins, LocalTime departure) {
+        int[][] arrivals = new int[origins.length][];
+        IntStream.range(0, origins.length).parallel()
+                 .forEach(i -> arrivals[i] = earliestArrivals(origins[i], departure));
+        return arrivals;
+    }
+
+    // Stations whose earliest arrival is within the given number of minutes of the departure time
+    public int[] reachableWithin(int origin, LocalTime departure, int maxMinutes) {
+        int[] arrivals = earliestArrivals(origin, departure);
+        int limit = toMinute(departure) + maxMinutes;
+        return IntStream.range(0, arrivals.length)
+                        .filter(station -> arrivals[station] <= limit)
+                        .toArray();
+    }
+
+    public void dijkstra(int startStation, int[] distances, int[] previousStations) {
+        int size = size();
+        boolean[] visited = new boolean[size];
+        Arrays.fill(distances, INFINITY);
+        Arrays.fill(previousStations, -1);
+        distances[startStation] = 0;
+
+        // Ties pop the lowest station index first, like a linear scan over the stations would
+        MinHeap heap = new MinHeap();
+        heap.push(0, startStation);
+
+        while (!heap.isEmpty()) {
+            int minStation = heap.popStation();
+            if (visited[minStation]) continue;
+
+            visited[minStation] = true;
+
+            for (int i = 0; i < degree[minStation]; i++) {
+                int j = neighbours[minStation][i];
+                if (!visited[j]) {
+                    int newDist = distances[minStation] + this.distances[minStation][i];
+                    if (newDist < distances[j]) {
+                        distances[j] = newDist;
+                        previousStations[j] = minStation;
+                        heap.push(newDist, j);
+                    }
+                }
+            }
+        }
+    }
+
+    public ArrayList<Integer> reconstructPath(int[] previousStations, int startStation, int endStation) {
+        ArrayList<Integer> path = new ArrayList<>();
+        for (int at = endStation; at != -1; at = previousStations[at]) {
+            path.add(at);
+        }
+        Collections.reverse(path);
+
+        if (path.get(0) != startStation) {
+            return new ArrayList<>();
+        }
+
+        return path;
+    }
+
+    // Binary heap of (key, station) pairs packed into longs, so searches on large networks
+    // don't box every entry
+    private static class MinHeap {
+        private long[] entries = new long[16];
+        private int size;
+
+        void push(int key, int station) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            long entry = ((long) key << 32) | station;
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (entries[parent] <= entry) break;
+                entries[i] = entries[parent];
+                i = parent;
+            }
+            entries[i] = entry;
+        }
+
+        int popStation() {
+            long top = entries[0];
+            long last = entries[--size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && entries[child + 1] < entries[child]) child++;
+                if (last <= entries[child]) break;
+                entries[i] = entries[child];
+                i = child;
+            }
+            entries[i] = last;
+            return (int) top;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+import java.util.*;
+
+// Builds synthetic metro networks for scale testing. The layout is a classic radial-and-ring
+// metro: radial lines leave a central hub, ring lines circle the centre and interchange with
+// every radial line they cross. The same seed and size always give the same network.
+//
+// The requested size is an upper bound: lines have equal length, so the result can fall a few
+// stations short (under 1% from 1,000 stations up). The smallest layout has 7 stations.
+public class NetworkGenerator {
+
+    private static final double RING_SHARE = 0.3; // fraction of stations that sit on ring lines only
+    private static final int MIN_SPACING = 1; // km between neighbouring stations
+    private static final int MAX_SPACING = 3;
+    static final int MIN_STATIONS = 7; // hub, two radial lines of two stations and two ring stops
+
+    private final Random random;
+
+    public NetworkGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public MetroNetwork generate(int targetStations) {
+        if (targetStations < MIN_STATIONS) {
+            throw new IllegalArgumentException("A generated network needs at least " + MIN_STATIONS + " stations");
+        }
+
+        int lines = Math.max(2, (int) Math.round(Math.sqrt(targetStations) / 3));
+        int rings = Math.max(1, (int) Math.round(Math.sqrt(targetStations) / 12));
+        int ringStopsBetween = (int) Math.round(targetStations * RING_SHARE / (rings * lines));
+        int stationsPerLine = Math.max(rings + 1, (targetStations - 1 - rings * lines * ringStopsBetween) / lines);
+
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<int[]> connections = new ArrayList<>(); // from, to, distance, headway
+        names.add("Central");
+
+        // Radial lines: station i of line l is at radius[l][i] km from the centre
+        int[][] lineStations = new int[lines][stationsPerLine];
+        int[][] radius = new int[lines][stationsPerLine];
+        for (int line = 0; line < lines; line++) {
+            // Trains run more often on lines into the centre of busier networks
+            int headway = 2 + random.nextInt(4) + (lines > 8 ? 0 : 2);
+            int previous = 0;
+            int previousRadius = 0;
+            for (int i = 0; i < stationsPerLine; i++) {
+                int station = names.size();
+                names.add("R" + (line + 1) + "-" + (i + 1));
+                int spacing = spacing();
+                connections.add(new int[]{previous, station, spacing, headway});
+                lineStations[line][i] = station;
+                radius[line][i] = previousRadius + spacing;
+                previous = station;
+                previousRadius += spacing;
+            }
+        }
+
+        // Ring lines interchange with every radial line at evenly spaced positions along it
+        for (int ring = 0; ring < rings; ring++) {
+            int position = (ring + 1) * stationsPerLine / (rings + 1);
+            int headway = 5 + random.nextInt(8);
+            int first = lineStations[0][position];
+            int previous = first;
+            for (int line = 0; line < lines; line++) {
+                int nextLine = (line + 1) % lines;
+                int interchange = lineStations[nextLine][position];
+
+                // Arc between the two interchanges, split across the ring-only stops
+                double ringRadius = (radius[line][position] + radius[nextLine][position]) / 2.0;
+                double arc = 2 * Math.PI * ringRadius / lines;
+                int segmentDistance = Math.max(MIN_SPACING, (int) Math.round(arc / (ringStopsBetween + 1)));
+
+                for (int stop = 0; stop < ringStopsBetween; stop++) {
+                    int station = names.size();
+                    names.add("C" + (ring + 1) + "-" + (line + 1) + "." + (stop + 1));
+                    connections.add(new int[]{previous, station, jitter(segmentDistance), headway});
+                    previous = station;
+                }
+                connections.add(new int[]{previous, interchange, jitter(segmentDistance), headway});
+                previous = interchange;
+            }
+        }
+
+        MetroNetwork network = new MetroNetwork(names.toArray(new String[0]));
+        for (int[] connection : connections) {
+            network.addConnection(connection[0], connection[1], connection[2], connection[3]);
+        }
+        return network;
+    }
+
+    private int spacing() {
+        return MIN_SPACING + random.nextInt(MAX_SPACING - MIN_SPACING + 1);
+    }
+
+    private int jitter(int distance) {
+        return Math.max(MIN_SPACING, distance + random.nextInt(3) - 1);
+    }
+}
@@ -0,0 +1,146 @@
+import java.time.*;
+import java.util.*;
+
+// Measures routing, timetable and fare latency plus network memory on generated networks.
+// Each query goes from a random origin to a random station reachable from it within
+// MAX_TRIP_MINUTES, the length of a realistic metro trip. Latencies are per-query medians;
+// trains and fares count only the queries that found an itinerary, and the Planned column says
+// how many did. The whole
+// code path runs several times on small networks first, so the first size is not timed cold.
+// Usage: java NetworkScalingReport [seed] [size...]
+public class NetworkScalingReport {
+
+    private static final int[] DEFAULT_SIZES = {1_000, 10_000, 100_000};
+    private static final int QUERIES = 200;
+    private static final int WARMUP_QUERIES = 50;
+    private static final LocalTime QUERY_TIME = LocalTime.of(8, 0);
+    private static final int MAX_TRIP_MINUTES = 120;
+    private static final int WARMUP_SIZE = 1_000;
+    private static final int WARMUP_ROUNDS = 10;
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 42L;
+        int[] sizes = args.length > 1
+            ? Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray()
+            : DEFAULT_SIZES;
+
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            measure(seed + 1 + round, WARMUP_SIZE);
+        }
+
+        System.out.printf("Seed %d, median of %d queries per measurement, departures at %s, trips up to %d minutes%n%n",
+            seed, QUERIES, QUERY_TIME, MAX_TRIP_MINUTES);
+        System.out.printf("%9s %11s %9s %10s %12s %8s %12s %12s %12s%n",
+            "Stations", "Connections", "Build ms", "Memory MB",
+            "dijkstra ms", "Planned", "trains us", "arrivals ms", "fare us");
+
+        for (int size : sizes) {
+            System.out.println(measure(seed, size));
+        }
+    }
+
+    private static String measure(long seed, int size) {
+        long memoryBefore = usedMemory();
+        long buildStart = System.nanoTime();
+        MetroNetwork network = new NetworkGenerator(seed).generate(size);
+        double buildMillis = (System.nanoTime() - buildStart) / 1e6;
+        double memoryMegabytes = (usedMemory() - memoryBefore) / (1024.0 * 1024.0);
+
+        Random random = new Random(seed);
+        int stations = network.size();
+        int[] origins = new int[QUERIES + WARMUP_QUERIES];
+        int[] destinations = new int[origins.length];
+        for (int i = 0; i < origins.length; i++) {
+            int[] reachable;
+            do {
+                origins[i] = random.nextInt(stations);
+                reachable = network.reachableWithin(origins[i], QUERY_TIME, MAX_TRIP_MINUTES);
+            } while (reachable.length < 2);
+            do {
+                destinations[i] = reachable[random.nextInt(reachable.length)];
+            } while (destinations[i] == origins[i]);
+        }
+
+        // Shortest paths, reused below so each later stage measures only its own work
+        ArrayList<ArrayList<Integer>> paths = new ArrayList<>();
+        int[] distances = new int[stations];
+        int[] previousStations = new int[stations];
+        long[] dijkstraNanos = new long[QUERIES];
+        for (int i = 0; i < origins.length; i++) {
+            long start = System.nanoTime();
+            network.dijkstra(origins[i], distances, previousStations);
+            paths.add(network.reconstructPath(previousStations, origins[i], destinations[i]));
+            if (i >= WARMUP_QUERIES) {
+                dijkstraNanos[i - WARMUP_QUERIES] = System.nanoTime() - start;
+            }
+        }
+
+        // Train selection along each path, using the earliest train on every segment
+        ArrayList<ArrayList<LocalTime[]>> itineraries = new ArrayList<>();
+        long[] trainNanos = new long[QUERIES];
+        int planned = 0;
+        for (int i = 0; i < paths.size(); i++) {
+            long start = System.nanoTime();
+            ArrayList<ArrayList<LocalTime[]>> options = network.planItineraries(paths.get(i), QUERY_TIME, 1, QUERY_TIME);
+            long elapsed = System.nanoTime() - start;
+            if (i >= WARMUP_QUERIES && !options.isEmpty()) {
+                trainNanos[planned++] = elapsed;
+            }
+            itineraries.add(options.isEmpty() ? null : options.get(0));
+        }
+
+        long[] arrivalsNanos = new long[QUERIES];
+        for (int i = 0; i < origins.length; i++) {
+            long start = System.nanoTime();
+            network.earliestArrivals(origins[i], QUERY_TIME);
+            if (i >= WARMUP_QUERIES) {
+                arrivalsNanos[i - WARMUP_QUERIES] = System.nanoTime() - start;
+            }
+        }
+
+        long[] fareNanos = new long[QUERIES];
+        int fares = 0;
+        double checksum = 0;
+        int[] passengers = {2, 1, 0, 1};
+        for (int i = 0; i < paths.size(); i++) {
+            if (itineraries.get(i) == null) {
+                continue;
+            }
+            long start = System.nanoTime();
+            Booking booking = new Booking(network, paths.get(i), itineraries.get(i), null, null,
+                passengers, QUERY_TIME, LocalDate.now());
+            checksum += booking.getTotalFare();
+            if (i >= WARMUP_QUERIES) {
+                fareNanos[fares++] = System.nanoTime() - start;
+            }
+        }
+
+        // Keeps the network and fares reachable until after the measurements
+        if (checksum < 0 || network.size() < 0) {
+            System.out.println(checksum);
+        }
+
+        return String.format("%9d %11d %9.1f %10.1f %12.3f %8s %12.1f %12.3f %12.2f",
+            stations, network.connectionCount(), buildMillis, memoryMegabytes,
+            median(dijkstraNanos, QUERIES) / 1e6, planned + "/" + QUERIES, median(trainNanos, planned) / 1e3,
+            median(arrivalsNanos, QUERIES) / 1e6, median(fareNanos, fares) / 1e3);
+    }
+
+    // Of the first count samples; a GC pause in a few queries does not move it
+    private static double median(long[] nanos, int count) {
+        if (count == 0) {
+            return 0.0;
+        }
+        long[] sorted = Arrays.copyOf(nanos, count);
+        Arrays.sort(sorted);
+        return count % 2 == 1 ? sorted[count / 2] : (sorted[count / 2 - 1] + sorted[count / 2]) / 2.0;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
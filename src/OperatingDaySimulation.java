@@ -0,0 +1,337 @@
+import java.io.*;
+import java.time.*;
+import java.util.*;
+
+// Discrete-event simulation of one operating day, 06:00 to 20:00. Passengers arrive with a
+// peak-shaped demand curve and book through the same routing, timetable and fare logic as the
+// GUI; every directed segment runs its trains at its own headway, and a train that departs closes
+// its load. Time jumps from event to event on a manual clock, so a day runs in seconds; give a
+// pacing clock to slow it down to a chosen multiple of real time instead.
+//
+// Usage: java OperatingDaySimulation [bookingsPerDay] [seed] [stations] [speed]
+// stations 0 uses the default network; speed 0 runs as fast as possible.
+public class OperatingDaySimulation {
+
+    static final int DEFAULT_SEATS_PER_TRAIN = 300;
+    private static final int ITINERARY_OPTIONS = 3; // later trains tried when the first is full
+    private static final int MAX_BOOKING_LEAD = 20; // minutes between booking and wanted departure
+    private static final double ROUND_TRIP_SHARE = 0.2;
+    private static final int MIN_DWELL = 60;
+    private static final int MAX_DWELL = 240;
+    private static final int ROUTE_CACHE_INTS = 16 << 20; // 64 MB of shortest path trees
+
+    // Relative booking demand for each operating hour from 06:00, peaking in the rush hours
+    private static final double[] HOURLY_DEMAND = {4, 9, 10, 7, 4, 3, 3, 3, 3, 4, 6, 9, 9, 5};
+
+    private enum EventType {
+        BOOKING_REQUEST, // before departures at the same second, so a just-booked load is counted
+        DEPARTURE
+    }
+
+    private static class Event implements Comparable<Event> {
+        final int second; // of the day
+        final EventType type;
+        final long sequence;
+        final int from;
+        final int to;
+
+        Event(int second, EventType type, long sequence, int from, int to) {
+            this.second = second;
+            this.type = type;
+            this.sequence = sequence;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            if (second != other.second) {
+                return Integer.compare(second, other.second);
+            }
+            if (type != other.type) {
+                return type.compareTo(other.type);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final MetroNetwork network;
+    private final Random random;
+    private final int bookingsPerDay;
+    private final int seatsPerTrain;
+    private final RidershipAnalytics analytics;
+    private final DepartureBoardPublisher board;
+    private final MetroClock.Manual clock;
+
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private final HashMap<Long, Integer> loads = new HashMap<>(); // booked seats per train not yet departed
+    private final int[] distances;
+    private final LinkedHashMap<Integer, int[]> routeCache;
+    private long sequence;
+    private double nextRequest; // exact arrival time in seconds; events only keep whole seconds
+
+    private long eventsProcessed;
+    private long requests;
+    private long confirmed;
+    private long soldOut;
+    private long noService;
+    private long passengers;
+    private long departures;
+    private long seatsDeparted;
+    private long fullTrains;
+    private int maxLoad;
+    private double revenue;
+    private double wallSeconds;
+
+    public OperatingDaySimulation(MetroNetwork network, long seed, int bookingsPerDay, int seatsPerTrain,
+                                  RidershipAnalytics analytics, DepartureBoardPublisher board) {
+        if (bookingsPerDay < 0 || seatsPerTrain < Booking.MAX_PASSENGERS) {
+            throw new IllegalArgumentException("Invalid demand or train capacity");
+        }
+        this.network = network;
+        this.random = new Random(seed);
+        this.bookingsPerDay = bookingsPerDay;
+        this.seatsPerTrain = seatsPerTrain;
+        this.analytics = analytics;
+        this.board = board;
+        this.clock = new MetroClock.Manual(LocalDate.now(), MetroNetwork.FIRST_TRAIN);
+        this.distances = new int[network.size()];
+
+        // Shortest path trees per origin, least recently used evicted first
+        int cachedOrigins = Math.max(1, ROUTE_CACHE_INTS / network.size());
+        this.routeCache = new LinkedHashMap<Integer, int[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+                return size() > cachedOrigins;
+            }
+        };
+    }
+
+    // The simulated time, for anything that should follow the simulation while it runs
+    public Clock getClock() {
+        return clock;
+    }
+
+    // Runs the whole day; pace is null to run as fast as possible, or an accelerated clock to wait
+    // for before each event, e.g. MetroClock.accelerated(MetroNetwork.FIRST_TRAIN, 600)
+    public void run(MetroClock.Accelerated pace) throws InterruptedException {
+        int firstSecond = MetroNetwork.FIRST_TRAIN.toSecondOfDay();
+        for (int station = 0; station < network.size(); station++) {
+            for (int next : network.neighbours(station)) {
+                schedule(firstSecond, EventType.DEPARTURE, station, next);
+            }
+        }
+        nextRequest = firstSecond;
+        scheduleNextRequest();
+
+        long start = System.nanoTime();
+        Event event;
+        while ((event = events.poll()) != null) {
+            LocalTime now = LocalTime.ofSecondOfDay(event.second);
+            if (pace != null) {
+                waitFor(pace, now);
+            }
+            clock.advanceTo(now);
+            if (board != null) {
+                board.advanceTo(now);
+            }
+
+            if (event.type == EventType.DEPARTURE) {
+                depart(event);
+            } else {
+                book(now);
+                scheduleNextRequest();
+            }
+            eventsProcessed++;
+        }
+        wallSeconds = (System.nanoTime() - start) / 1e9;
+    }
+
+    private void depart(Event event) {
+        int minute = event.second / 60;
+        Integer load = loads.remove(network.trainKey(event.from, event.to, minute));
+        int seats = load == null ? 0 : load;
+        departures++;
+        seatsDeparted += seats;
+        maxLoad = Math.max(maxLoad, seats);
+        if (seats == seatsPerTrain) {
+            fullTrains++;
+        }
+
+        int next = minute + network.headway(event.from, event.to);
+        if (next * 60 <= MetroNetwork.LAST_TRAIN.toSecondOfDay()) {
+            schedule(next * 60, EventType.DEPARTURE, event.from, event.to);
+        }
+    }
+
+    private void book(LocalTime now) {
+        requests++;
+        int origin = random.nextInt(network.size());
+        int destination = random.nextInt(network.size() - 1);
+        if (destination >= origin) {
+            destination++;
+        }
+
+        int[] previousStations = routeCache.computeIfAbsent(origin, o -> {
+            int[] tree = new int[network.size()];
+            network.dijkstra(o, distances, tree);
+            return tree;
+        });
+        ArrayList<Integer> path = network.reconstructPath(previousStations, origin, destination);
+        LocalTime wanted = now.plusMinutes(random.nextInt(MAX_BOOKING_LEAD + 1));
+        ArrayList<ArrayList<LocalTime[]>> itineraries = path.isEmpty() || wanted.isAfter(MetroNetwork.LAST_TRAIN)
+            ? new ArrayList<>()
+            : network.planItineraries(path, wanted, ITINERARY_OPTIONS, now);
+        if (itineraries.isEmpty()) {
+            noService++;
+            return;
+        }
+
+        int[] party = randomParty();
+        int seats = Arrays.stream(party).sum();
+        ArrayList<Integer> returnPath = null;
+        if (random.nextDouble() < ROUND_TRIP_SHARE) {
+            returnPath = new ArrayList<>(path);
+            Collections.reverse(returnPath);
+        }
+        int dwell = MIN_DWELL + random.nextInt(MAX_DWELL - MIN_DWELL + 1);
+
+        for (ArrayList<LocalTime[]> legs : itineraries) {
+            if (!fits(path, legs, seats)) {
+                continue;
+            }
+            // Without a return train with free seats the passenger travels one way
+            ArrayList<LocalTime[]> returnLegs = null;
+            if (returnPath != null) {
+                ArrayList<ArrayList<LocalTime[]>> returns = network.planReturnOptions(returnPath,
+                    legs.get(legs.size() - 1)[1], dwell, ITINERARY_OPTIONS, now);
+                for (ArrayList<LocalTime[]> option : returns) {
+                    if (fits(returnPath, option, seats)) {
+                        returnLegs = option;
+                        break;
+                    }
+                }
+            }
+
+            Booking booking = new Booking(network, path, legs, returnLegs == null ? null : returnPath, returnLegs,
+                party, now, LocalDate.now(clock));
+            board(path, legs, seats);
+            if (returnLegs != null) {
+                board(returnPath, returnLegs, seats);
+            }
+            if (analytics != null) {
+                analytics.record(booking);
+            }
+            confirmed++;
+            passengers += seats;
+            revenue += booking.getTotalFare();
+            return;
+        }
+        soldOut++;
+    }
+
+    private boolean fits(ArrayList<Integer> path, ArrayList<LocalTime[]> legs, int seats) {
+        for (int i = 0; i < legs.size(); i++) {
+            long train = network.trainKey(path.get(i), path.get(i + 1), MetroNetwork.toMinute(legs.get(i)[0]));
+            if (loads.getOrDefault(train, 0) + seats > seatsPerTrain) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void board(ArrayList<Integer> path, ArrayList<LocalTime[]> legs, int seats) {
+        for (int i = 0; i < legs.size(); i++) {
+            loads.merge(network.trainKey(path.get(i), path.get(i + 1), MetroNetwork.toMinute(legs.get(i)[0])), seats,
+                Integer::sum);
+            if (board != null) {
+                board.recordBoarding(path.get(i), path.get(i + 1), legs.get(i)[0], seats);
+            }
+        }
+    }
+
+    private int[] randomParty() {
+        int[] party = new int[Booking.Category.values().length];
+        int size = 1 + random.nextInt(4);
+        for (int i = 0; i < size; i++) {
+            party[i == 0 ? 0 : random.nextInt(party.length)]++;
+        }
+        return party;
+    }
+
+    // Arrivals form a Poisson process whose rate follows the hourly demand curve
+    private void scheduleNextRequest() {
+        int lastSecond = MetroNetwork.LAST_TRAIN.toSecondOfDay();
+        if (bookingsPerDay == 0 || nextRequest >= lastSecond) {
+            return;
+        }
+        int hour = Math.min((int) nextRequest / 3600 - MetroNetwork.FIRST_TRAIN.getHour(), HOURLY_DEMAND.length - 1);
+        double perSecond = bookingsPerDay * HOURLY_DEMAND[hour] / Arrays.stream(HOURLY_DEMAND).sum() / 3600;
+        nextRequest += -Math.log(1 - random.nextDouble()) / perSecond;
+        if (nextRequest < lastSecond) {
+            schedule((int) nextRequest, EventType.BOOKING_REQUEST, -1, -1);
+        }
+    }
+
+    private void schedule(int second, EventType type, int from, int to) {
+        events.add(new Event(second, type, sequence++, from, to));
+    }
+
+    private static void waitFor(MetroClock.Accelerated pace, LocalTime time) throws InterruptedException {
+        long ahead;
+        while ((ahead = Duration.between(LocalTime.now(pace), time).toMillis()) > 0) {
+            Thread.sleep(Math.max(1, (long) (ahead / pace.getSpeed())));
+        }
+    }
+
+    public void printReport(PrintStream out) {
+        double simulatedHours = Duration.between(MetroNetwork.FIRST_TRAIN, MetroNetwork.LAST_TRAIN).toMinutes() / 60.0;
+        out.printf("Simulated %.0f h of operation in %.2f s (%.0fx real time)%n",
+            simulatedHours, wallSeconds, simulatedHours * 3600 / Math.max(wallSeconds, 1e-9));
+        out.printf("Events: %d (%.0f/s)%n", eventsProcessed, eventsProcessed / Math.max(wallSeconds, 1e-9));
+        out.printf("Booking requests: %d, confirmed %d, sold out %d, no service %d%n",
+            requests, confirmed, soldOut, noService);
+        out.printf("Passengers: %d, revenue %.2f%n", passengers, revenue);
+        out.printf("Trains run: %d, average load %.1f, max load %d of %d seats, %d full%n",
+            departures, departures == 0 ? 0.0 : (double) seatsDeparted / departures, maxLoad, seatsPerTrain, fullTrains);
+        if (analytics != null) {
+            long[] byHour = analytics.getPassengersByHour();
+            StringBuilder hours = new StringBuilder("Passengers by departure hour:");
+            for (int hour = MetroNetwork.FIRST_TRAIN.getHour(); hour < MetroNetwork.LAST_TRAIN.getHour(); hour++) {
+                hours.append(String.format(" %02d:%d", hour, byHour[hour]));
+            }
+            out.println(hours);
+        }
+        if (board != null) {
+            out.printf("Departure board updates dropped: %d%n", board.getDroppedCount());
+        }
+    }
+
+    public long getConfirmedCount() {
+        return confirmed;
+    }
+
+    public long getSoldOutCount() {
+        return soldOut;
+    }
+
+    public long getDepartureCount() {
+        return departures;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int bookings = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42L;
+        int stations = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        double speed = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+
+        MetroNetwork network = stations > 0 ? new NetworkGenerator(seed).generate(stations) : MetroNetwork.createDefault();
+        RidershipAnalytics analytics = new RidershipAnalytics(network);
+        try (DepartureBoardPublisher board = new DepartureBoardPublisher(network, 30)) {
+            OperatingDaySimulation simulation = new OperatingDaySimulation(network, seed, bookings,
+                DEFAULT_SEATS_PER_TRAIN, analytics, board);
+            simulation.run(speed > 0 ? MetroClock.accelerated(MetroNetwork.FIRST_TRAIN, speed) : null);
+            simulation.printReport(System.out);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+// Revenue and ridership aggregated incrementally from confirmed bookings. Figures are kept in
+// columnar primitive arrays, revenue in cents, so dashboard queries only read a few cells:
+//
+//   segment x hour             boardings and revenue per directed segment and departure hour
+//   hour x category x peak     passengers and revenue per departure hour, category and peak flag
+//
+// Segment figures count a passenger on every leg they ride. The hour x category x peak figures
+// count each passenger once, at the departure hour of the first outbound train.
+//
+// A full segment x hour x category x peak cube would need hundreds of megabytes on large
+// generated networks, so per-segment figures are split by hour only.
+public class RidershipAnalytics {
+
+    private static final int HOURS = 24;
+    private static final int CATEGORIES = Booking.Category.values().length;
+    private static final int CUBE_CELLS = HOURS * CATEGORIES * 2;
+
+    // One immutable set of columns; a rebuild swaps in a new set in one step
+    private static class Columns {
+        final AtomicLongArray segmentPassengers;
+        final AtomicLongArray segmentRevenue;
+        final AtomicLongArray cubePassengers;
+        final AtomicLongArray cubeRevenue;
+        final AtomicLong bookings;
+
+        Columns(long[] segmentPassengers, long[] segmentRevenue, long[] cubePassengers, long[] cubeRevenue, long bookings) {
+            this.segmentPassengers = new AtomicLongArray(segmentPassengers);
+            this.segmentRevenue = new AtomicLongArray(segmentRevenue);
+            this.cubePassengers = new AtomicLongArray(cubePassengers);
+            this.cubeRevenue = new AtomicLongArray(cubeRevenue);
+            this.bookings = new AtomicLong(bookings);
+        }
+    }
+
+    // Plain arrays for a single-threaded part of a parallel rebuild
+    private static class Partial {
+        final long[] segmentPassengers;
+        final long[] segmentRevenue;
+        final long[] cubePassengers = new long[CUBE_CELLS];
+        final long[] cubeRevenue = new long[CUBE_CELLS];
+        long bookings;
+
+        Partial(int segmentCells) {
+            segmentPassengers = new long[segmentCells];
+            segmentRevenue = new long[segmentCells];
+        }
+
+        void merge(Partial other) {
+            addAll(segmentPassengers, other.segmentPassengers);
+            addAll(segmentRevenue, other.segmentRevenue);
+            addAll(cubePassengers, other.cubePassengers);
+            addAll(cubeRevenue, other.cubeRevenue);
+            bookings += other.bookings;
+        }
+
+        private static void addAll(long[] target, long[] source) {
+            for (int i = 0; i < target.length; i++) {
+                target[i] += source[i];
+            }
+        }
+    }
+
+    private interface Sink {
+        void add(int segment, int hour, int category, boolean peak, long boardings, long passengers, long revenueCents);
+    }
+
+    private final int[][] adjacency;
+    private final int[] segmentOffsets;
+    private final int[] segmentDistances;
+    private final int segmentCells;
+    private volatile Columns columns;
+    // Records share the read side; a rebuild takes the write side so no record lands in columns being replaced
+    private final ReentrantReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+
+    public RidershipAnalytics(MetroNetwork network) {
+        int size = network.size();
+        adjacency = new int[size][];
+        segmentOffsets = new int[size + 1];
+        for (int station = 0; station < size; station++) {
+            adjacency[station] = network.neighbours(station);
+            segmentOffsets[station + 1] = segmentOffsets[station] + adjacency[station].length;
+        }
+        segmentDistances = new int[segmentOffsets[size]];
+        for (int station = 0; station < size; station++) {
+            for (int i = 0; i < adjacency[station].length; i++) {
+                segmentDistances[segmentOffsets[station] + i] = network.distance(station, adjacency[station][i]);
+            }
+        }
+        segmentCells = segmentOffsets[size] * HOURS;
+        columns = new Columns(new long[segmentCells], new long[segmentCells],
+            new long[CUBE_CELLS], new long[CUBE_CELLS], 0);
+    }
+
+    public void record(Booking booking) {
+        rebuildLock.readLock().lock();
+        try {
+            Columns current = columns;
+            aggregate(booking, (segment, hour, category, peak, boardings, passengers, revenue) -> {
+                int segmentCell = segment * HOURS + hour;
+                int cubeCell = cubeCell(hour, category, peak);
+                current.segmentPassengers.addAndGet(segmentCell, boardings);
+                current.segmentRevenue.addAndGet(segmentCell, revenue);
+                if (passengers > 0) {
+                    current.cubePassengers.addAndGet(cubeCell, passengers);
+                }
+                current.cubeRevenue.addAndGet(cubeCell, revenue);
+            });
+            current.bookings.incrementAndGet();
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+    }
+
+    // Replaces every aggregate with a parallel scan over the booking history, which the caller
+    // keeps; analytics only hold the aggregates. Records wait until the rebuild has finished, and
+    // queries keep answering from the previous figures meanwhile.
+    public void rebuild(Collection<Booking> history) {
+        rebuildLock.writeLock().lock();
+        try {
+            Partial total = history.parallelStream().collect(
+                () -> new Partial(segmentCells),
+                (partial, booking) -> {
+                    aggregate(booking, (segment, hour, category, peak, boardings, passengers, revenue) -> {
+                        int segmentCell = segment * HOURS + hour;
+                        int cubeCell = cubeCell(hour, category, peak);
+                        partial.segmentPassengers[segmentCell] += boardings;
+                        partial.segmentRevenue[segmentCell] += revenue;
+                        partial.cubePassengers[cubeCell] += passengers;
+                        partial.cubeRevenue[cubeCell] += revenue;
+                    });
+                    partial.bookings++;
+                },
+                Partial::merge);
+            columns = new Columns(total.segmentPassengers, total.segmentRevenue,
+                total.cubePassengers, total.cubeRevenue, total.bookings);
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    // Each leg carries every passenger; the fare is split across legs by distance, and for
+    // round trips the return share goes to the return legs when they were booked
+    private void aggregate(Booking booking, Sink sink) {
+        boolean peak = booking.isPeakHour();
+        boolean hasReturn = booking.isRoundTrip() && !booking.getReturnLegs().isEmpty();
+        double outboundShare = hasReturn ? 1.0 / Booking.ROUND_TRIP_MULTIPLIER : 1.0;
+
+        for (Booking.Category category : Booking.Category.values()) {
+            int passengers = booking.getPassengers(category);
+            if (passengers == 0) {
+                continue;
+            }
+            double fare = booking.getFare(category);
+            aggregateLegs(booking.getPath(), booking.getLegs(), category, peak, passengers, true,
+                fare * outboundShare, sink);
+            if (hasReturn) {
+                aggregateLegs(booking.getReturnPath(), booking.getReturnLegs(), category, peak, passengers, false,
+                    fare * (1.0 - outboundShare), sink);
+            }
+        }
+    }
+
+    // Every leg counts a boarding per passenger; passengers themselves are counted on the first
+    // outbound leg only
+    private void aggregateLegs(ArrayList<Integer> path, ArrayList<LocalTime[]> legs, Booking.Category category,
+                               boolean peak, int passengers, boolean outbound, double fare, Sink sink) {
+        int[] segments = new int[legs.size()];
+        int[] legDistances = new int[legs.size()];
+        int totalDistance = 0;
+        for (int i = 0; i < legs.size(); i++) {
+            segments[i] = segmentIndex(path.get(i), path.get(i + 1));
+            legDistances[i] = segmentDistances[segments[i]];
+            totalDistance += legDistances[i];
+        }
+
+        long fareCents = Math.round(fare * 100);
+        long allocated = 0;
+        for (int i = 0; i < legs.size(); i++) {
+            // The last leg takes the rounding remainder so revenue adds up to the fare exactly
+            long revenue = i == legs.size() - 1
+                ? fareCents - allocated
+                : Math.round((double) fareCents * legDistances[i] / totalDistance);
+            allocated += revenue;
+            sink.add(segments[i], legs.get(i)[0].getHour(), category.ordinal(), peak, passengers,
+                outbound && i == 0 ? passengers : 0, revenue);
+        }
+    }
+
+    private int segmentIndex(int from, int to) {
+        int[] neighbours = adjacency[from];
+        for (int i = 0; i < neighbours.length; i++) {
+            if (neighbours[i] == to) {
+                return segmentOffsets[from] + i;
+            }
+        }
+        throw new IllegalArgumentException("No segment between stations " + from + " and " + to);
+    }
+
+    private static int cubeCell(int hour, int category, boolean peak) {
+        return (hour * CATEGORIES + category) * 2 + (peak ? 1 : 0);
+    }
+
+    public long getBookingCount() {
+        return columns.bookings.get();
+    }
+
+    public double getTotalRevenue() {
+        return sum(columns.cubeRevenue, 0, CUBE_CELLS, 1) / 100.0;
+    }
+
+    public long getTotalPassengers() {
+        return sum(columns.cubePassengers, 0, CUBE_CELLS, 1);
+    }
+
+    public double getRevenue(int hour, Booking.Category category, boolean peak) {
+        return columns.cubeRevenue.get(cubeCell(hour, category.ordinal(), peak)) / 100.0;
+    }
+
+    public long getPassengers(int hour, Booking.Category category, boolean peak) {
+        return columns.cubePassengers.get(cubeCell(hour, category.ordinal(), peak));
+    }
+
+    public double[] getRevenueByHour() {
+        Columns current = columns;
+        double[] revenue = new double[HOURS];
+        for (int hour = 0; hour < HOURS; hour++) {
+            revenue[hour] = sum(current.cubeRevenue, hour * CATEGORIES * 2, CATEGORIES * 2, 1) / 100.0;
+        }
+        return revenue;
+    }
+
+    public long[] getPassengersByHour() {
+        Columns current = columns;
+        long[] passengers = new long[HOURS];
+        for (int hour = 0; hour < HOURS; hour++) {
+            passengers[hour] = sum(current.cubePassengers, hour * CATEGORIES * 2, CATEGORIES * 2, 1);
+        }
+        return passengers;
+    }
+
+    public double getRevenue(Booking.Category category) {
+        return sumCategory(columns.cubeRevenue, category) / 100.0;
+    }
+
+    public long getPassengers(Booking.Category category) {
+        return sumCategory(columns.cubePassengers, category);
+    }
+
+    public double getPeakRevenue(boolean peak) {
+        return sum(columns.cubeRevenue, peak ? 1 : 0, HOURS * CATEGORIES, 2) / 100.0;
+    }
+
+    public long getPeakPassengers(boolean peak) {
+        return sum(columns.cubePassengers, peak ? 1 : 0, HOURS * CATEGORIES, 2);
+    }
+
+    public double getSegmentRevenue(int from, int to) {
+        return sum(columns.segmentRevenue, segmentIndex(from, to) * HOURS, HOURS, 1) / 100.0;
+    }
+
+    public long getSegmentPassengers(int from, int to) {
+        return sum(columns.segmentPassengers, segmentIndex(from, to) * HOURS, HOURS, 1);
+    }
+
+    public long[] getSegmentPassengersByHour(int from, int to) {
+        Columns current = columns;
+        int base = segmentIndex(from, to) * HOURS;
+        long[] passengers = new long[HOURS];
+        for (int hour = 0; hour < HOURS; hour++) {
+            passengers[hour] = current.segmentPassengers.get(base + hour);
+        }
+        return passengers;
+    }
+
+    private static long sumCategory(AtomicLongArray cube, Booking.Category category) {
+        long total = 0;
+        for (int hour = 0; hour < HOURS; hour++) {
+            int cell = cubeCell(hour, category.ordinal(), false);
+            total += cube.get(cell) + cube.get(cell + 1);
+        }
+        return total;
+    }
+
+    private static long sum(AtomicLongArray column, int start, int count, int stride) {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += column.get(start + i * stride);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.*;
+import java.net.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Seat inventory partitioned across InventoryShard processes. Each train (segment, departure) is
+// owned by the shard the hash ring picks for it, so the legs of one journey can land on different
+// shards. A booking reserves seats in two phases: hold every leg on its shard, then commit the
+// holds if all of them succeeded, or release them if any leg was full or a shard did not answer.
+//
+// The ring keeps rebalancing cheap: adding or removing a shard only moves about 1/n of the trains.
+// Shards do not hand inventory over, so a moved train starts again with every seat free on its new
+// shard. The ring is therefore fixed once built; rebalance by starting a new ShardedInventory with
+// the new shard list between operating days.
+public class ShardedInventory implements Closeable {
+
+    private static final int VIRTUAL_NODES = 64;
+    private static final long REQUEST_TIMEOUT_MILLIS = 2_000;
+    private static final long RETRY_PAUSE_MILLIS = 100;
+
+    public enum Outcome {
+        CONFIRMED,
+        SOLD_OUT,     // a leg did not have enough free seats
+        UNAVAILABLE,  // a shard failed or timed out; nothing was booked
+        UNCERTAIN     // a shard never confirmed its commit; legs on other shards are booked
+    }
+
+    private final ConsistentHashRing<InetSocketAddress> ring = new ConsistentHashRing<>(VIRTUAL_NODES);
+    private final InventoryClient client;
+    private final long holdPrefix = ThreadLocalRandom.current().nextLong() << 32;
+    private final AtomicLong nextHold = new AtomicLong();
+
+    public ShardedInventory(List<InetSocketAddress> shards) throws IOException {
+        client = new InventoryClient();
+        for (InetSocketAddress shard : shards) {
+            addShard(shard);
+        }
+    }
+
+    // Only while the ring is being built, before any booking; see the class comment
+    private void addShard(InetSocketAddress shard) throws IOException {
+        client.connect(shard);
+        ring.add(shard);
+    }
+
+    public InetSocketAddress shardFor(long train) {
+        return ring.nodeFor(train);
+    }
+
+    // Seats for every passenger on every outbound and return leg
+    public Outcome reserve(Booking booking) {
+        ArrayList<Long> trains = new ArrayList<>();
+        addTrains(trains, booking.getDate(), booking.getPath(), booking.getLegs());
+        if (booking.isRoundTrip() && booking.getReturnLegs() != null) {
+            addTrains(trains, booking.getDate(), booking.getReturnPath(), booking.getReturnLegs());
+        }
+        return reserve(trains, booking.getTotalPassengers());
+    }
+
+    public Outcome reserve(List<Long> trains, int seats) {
+        long holdId = holdPrefix | nextHold.incrementAndGet();
+        // Shards start the hold clock when they take the hold, never before this
+        long holdDeadline = System.currentTimeMillis() + InventoryShard.HOLD_TIMEOUT_MILLIS;
+
+        // Phase one: hold every leg, all shards in parallel
+        Set<InetSocketAddress> shards = new LinkedHashSet<>();
+        ArrayList<CompletableFuture<InventoryProtocol.Response>> holds = new ArrayList<>();
+        for (long train : trains) {
+            InetSocketAddress shard = shardFor(train);
+            shards.add(shard);
+            holds.add(client.send(shard, InventoryProtocol.Op.HOLD, holdId, train, seats));
+        }
+
+        Outcome outcome = Outcome.CONFIRMED;
+        for (CompletableFuture<InventoryProtocol.Response> hold : holds) {
+            InventoryProtocol.Response response = await(hold);
+            if (response == null) {
+                outcome = Outcome.UNAVAILABLE;
+            } else if (response.getStatus() != InventoryProtocol.Status.OK && outcome == Outcome.CONFIRMED) {
+                outcome = Outcome.SOLD_OUT;
+            }
+        }
+
+        // Phase two: commit everywhere, or release everywhere. Releasing on a shard that never
+        // got the hold is harmless, and a shard that missed the release expires the hold itself.
+        InventoryProtocol.Op decision = outcome == Outcome.CONFIRMED
+            ? InventoryProtocol.Op.COMMIT
+            : InventoryProtocol.Op.RELEASE;
+        Map<InetSocketAddress, CompletableFuture<InventoryProtocol.Response>> replies = new LinkedHashMap<>();
+        for (InetSocketAddress shard : shards) {
+            replies.put(shard, client.send(shard, decision, holdId, 0, 0));
+        }
+        for (Map.Entry<InetSocketAddress, CompletableFuture<InventoryProtocol.Response>> reply : replies.entrySet()) {
+            InventoryProtocol.Response response = await(reply.getValue());
+            if (decision == InventoryProtocol.Op.COMMIT) {
+                if (response == null) {
+                    response = repeatCommit(reply.getKey(), holdId, holdDeadline);
+                }
+                if (response == null || response.getStatus() != InventoryProtocol.Status.OK) {
+                    outcome = Outcome.UNCERTAIN;
+                }
+            }
+        }
+        return outcome;
+    }
+
+    // A commit without an answer may still have been applied, so it is sent again under the same
+    // hold id until the shard answers or the hold has expired there; shards acknowledge a commit
+    // they have already applied
+    private InventoryProtocol.Response repeatCommit(InetSocketAddress shard, long holdId, long holdDeadline) {
+        while (System.currentTimeMillis() < holdDeadline) {
+            InventoryProtocol.Response response = await(client.send(shard, InventoryProtocol.Op.COMMIT, holdId, 0, 0));
+            if (response != null) {
+                return response;
+            }
+            try {
+                Thread.sleep(RETRY_PAUSE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    // Free seats on one train, or -1 if its shard did not answer
+    public int available(LocalDate date, int from, int to, LocalTime departure) {
+        return available(InventoryProtocol.trainKey(date, from, to, departure));
+    }
+
+    public int available(long train) {
+        InventoryProtocol.Response response = await(client.send(shardFor(train), InventoryProtocol.Op.QUERY, 0, train, 0));
+        return response == null ? -1 : response.getAvailable();
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    private static void addTrains(ArrayList<Long> trains, LocalDate date, ArrayList<Integer> path,
+                                  ArrayList<LocalTime[]> legs) {
+        for (int i = 0; i < legs.size(); i++) {
+            trains.add(InventoryProtocol.trainKey(date, path.get(i), path.get(i + 1), legs.get(i)[0]));
+        }
+    }
+
+    private static InventoryProtocol.Response await(CompletableFuture<InventoryProtocol.Response> future) {
+        try {
+            return future.get(REQUEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Completing the future drops the client's bookkeeping for a shard that never answered
+            future.completeExceptionally(e);
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+}
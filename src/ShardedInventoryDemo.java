@@ -0,0 +1,151 @@
+import java.io.*;
+import java.net.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+// Starts several InventoryShard processes on loopback, books random journeys on the default
+// network against them from many threads, then checks no train was sold beyond its capacity.
+// Usage: java ShardedInventoryDemo [shards] [bookings] [seatsPerTrain]
+public class ShardedInventoryDemo {
+
+    private static final int THREADS = 16;
+
+    public static void main(String[] args) throws Exception {
+        int shardCount = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int bookings = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int capacity = args.length > 2 ? Integer.parseInt(args[2]) : InventoryShard.DEFAULT_CAPACITY;
+
+        ArrayList<Process> processes = new ArrayList<>();
+        try {
+            ArrayList<InetSocketAddress> shards = new ArrayList<>();
+            for (int i = 0; i < shardCount; i++) {
+                Process process = startShard(capacity);
+                processes.add(process);
+                shards.add(new InetSocketAddress(InetAddress.getLoopbackAddress(), readPort(process)));
+            }
+            System.out.println("Started " + shardCount + " shards on " + shards);
+            run(shards, bookings, capacity);
+        } finally {
+            for (Process process : processes) {
+                process.destroy();
+            }
+        }
+    }
+
+    private static void run(List<InetSocketAddress> shards, int bookings, int capacity) throws Exception {
+        MetroNetwork network = MetroNetwork.createDefault();
+        ArrayList<Booking> requests = randomBookings(network, bookings);
+
+        Map<InetSocketAddress, Integer> owned = new HashMap<>();
+        Set<Long> trains = new HashSet<>();
+        for (Booking booking : requests) {
+            for (int i = 0; i < booking.getLegs().size(); i++) {
+                trains.add(InventoryProtocol.trainKey(booking.getDate(), booking.getPath().get(i),
+                    booking.getPath().get(i + 1), booking.getLegs().get(i)[0]));
+            }
+        }
+
+        try (ShardedInventory inventory = new ShardedInventory(shards)) {
+            for (long train : trains) {
+                owned.merge(inventory.shardFor(train), 1, Integer::sum);
+            }
+            System.out.println("Trains per shard: " + owned.values());
+
+            EnumMap<ShardedInventory.Outcome, AtomicInteger> outcomes = new EnumMap<>(ShardedInventory.Outcome.class);
+            for (ShardedInventory.Outcome outcome : ShardedInventory.Outcome.values()) {
+                outcomes.put(outcome, new AtomicInteger());
+            }
+            ConcurrentHashMap<Long, AtomicInteger> sold = new ConcurrentHashMap<>();
+            AtomicInteger crossShard = new AtomicInteger();
+
+            ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+            long start = System.nanoTime();
+            for (Booking booking : requests) {
+                pool.execute(() -> {
+                    ShardedInventory.Outcome outcome = inventory.reserve(booking);
+                    outcomes.get(outcome).incrementAndGet();
+                    Set<InetSocketAddress> touched = new HashSet<>();
+                    for (int i = 0; i < booking.getLegs().size(); i++) {
+                        long train = InventoryProtocol.trainKey(booking.getDate(), booking.getPath().get(i),
+                            booking.getPath().get(i + 1), booking.getLegs().get(i)[0]);
+                        touched.add(inventory.shardFor(train));
+                        if (outcome == ShardedInventory.Outcome.CONFIRMED) {
+                            sold.computeIfAbsent(train, t -> new AtomicInteger()).addAndGet(booking.getTotalPassengers());
+                        }
+                    }
+                    if (touched.size() > 1) {
+                        crossShard.incrementAndGet();
+                    }
+                });
+            }
+            pool.shutdown();
+            pool.awaitTermination(10, TimeUnit.MINUTES);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%d bookings in %.2f s (%.0f/s), %d spanning shards%n",
+                bookings, seconds, bookings / seconds, crossShard.get());
+            System.out.println("Outcomes: " + outcomes);
+
+            // Every shard must agree with what the coordinator confirmed
+            int mismatches = 0;
+            int oversold = 0;
+            for (Map.Entry<Long, AtomicInteger> entry : sold.entrySet()) {
+                int free = inventory.available(entry.getKey());
+                if (free != capacity - entry.getValue().get()) {
+                    mismatches++;
+                }
+                if (entry.getValue().get() > capacity) {
+                    oversold++;
+                }
+            }
+            System.out.printf("Checked %d trains: %d oversold, %d disagreeing with their shard%n",
+                sold.size(), oversold, mismatches);
+        }
+    }
+
+    // Peak-heavy demand on the default network so popular trains sell out
+    private static ArrayList<Booking> randomBookings(MetroNetwork network, int count) {
+        Random random = new Random(7);
+        int stations = network.size();
+        int[] distances = new int[stations];
+        int[] previousStations = new int[stations];
+        ArrayList<Booking> bookings = new ArrayList<>();
+        while (bookings.size() < count) {
+            int start = random.nextInt(stations);
+            int end = random.nextInt(stations);
+            if (start == end) {
+                continue;
+            }
+            network.dijkstra(start, distances, previousStations);
+            ArrayList<Integer> path = network.reconstructPath(previousStations, start, end);
+            LocalTime ready = LocalTime.of(random.nextBoolean() ? 8 : 6 + random.nextInt(13), random.nextInt(60));
+            ArrayList<ArrayList<LocalTime[]>> itineraries = network.planItineraries(path, ready, 1,
+                MetroNetwork.FIRST_TRAIN);
+            if (itineraries.isEmpty()) {
+                continue;
+            }
+            int[] passengers = {1 + random.nextInt(4), random.nextInt(2), 0, random.nextInt(3)};
+            bookings.add(new Booking(network, path, itineraries.get(0), null, null, passengers, ready, LocalDate.now()));
+        }
+        return bookings;
+    }
+
+    private static Process startShard(int capacity) throws IOException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+            "InventoryShard", "0", Integer.toString(capacity));
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        return builder.start();
+    }
+
+    private static int readPort(Process process) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        String line = reader.readLine();
+        if (line == null || !line.startsWith("LISTENING ")) {
+            throw new IOException("Inventory shard did not start: " + line);
+        }
+        return Integer.parseInt(line.substring("LISTENING ".length()).trim());
+    }
+}
@@ -6,19 +6,12 @@ import java.time.format.*;
 
 public class TicketBookingSystem extends JFrame {
     
-    private static LocalTime simulatedCurrentTime = LocalTime.of(13, 0);
+    private volatile Clock clock;
     private JSpinner testTimeSpinner;
     
-    private static final int INFINITY = Integer.MAX_VALUE;
-    private static final int NUM_STATIONS = 6;
-    private static final int TRAIN_SPEED = 30; // km/h
-    private static final int STATION_WAIT_TIME = 10; // minutes
-    private static final int MIN_TRANSFER_TIME = 5; // minutes
-    private static final LocalTime FIRST_TRAIN = LocalTime.of(6, 0);
-    private static final LocalTime LAST_TRAIN = LocalTime.of(20, 0);
-    private static final int TRAIN_INTERVAL = 10; // minutes between trains
-    private static final int SEARCH_WINDOW = 30; // minutes to search before and after desired time
-    private static final double PEAK_HOUR_MULTIPLIER = 1.5; // Price multiplier during peak hours
+    private static final int RETURN_OPTIONS = 3; // return trains offered after the dwell time
+    private static final int BOARD_WINDOW = 30; // minutes of departures shown on station boards
+    private static final int BOARD_REFRESH = 1000; // milliseconds between board updates for a running clock
     
     private JComboBox<String> startStationCombo;
     private JComboBox<String> endStationCombo;
@@ -32,6 +25,9 @@ public class TicketBookingSystem extends JFrame {
     private ArrayList<Integer> currentPath;
     private JLabel fareLabel; 
     private JCheckBox roundTripCheckBox; 
+    private JSpinner dwellSpinner;
+    private ArrayList<Integer> returnPath;
+    private RoundTripPlan roundTripPlan;
     private SpinnerNumberModel adultModel;
     private SpinnerNumberModel studentModel;
     private SpinnerNumberModel seniorModel;
@@ -42,15 +38,24 @@ public class TicketBookingSystem extends JFrame {
     private JSpinner seniorQuantity;
     private JSpinner childQuantity;
     
-    private final int[][] graph = new int[NUM_STATIONS][NUM_STATIONS];
-    private final String[] stationNames = {"A", "B", "C", "D", "E", "F"};
-    private final double BASE_FARE_PER_KM = 2.0; // Base fare per kilometer
+    private final MetroNetwork network = MetroNetwork.createDefault();
+    private final String[] stationNames = network.getStationNames();
+    private final DepartureBoardPublisher departureBoard = new DepartureBoardPublisher(network, BOARD_WINDOW);
+    private final RidershipAnalytics analytics = new RidershipAnalytics(network);
     
     public TicketBookingSystem() {
-        initializeGraph();
+        this(MetroClock.fixed(LocalTime.of(13, 0)));
+    }
+    
+    public TicketBookingSystem(Clock clock) {
+        this.clock = clock;
         setupTestTime();
         setupGUI();
         selectedTimes = new ArrayList<>();
+        departureBoard.advanceTo(getCurrentTime());
+        
+        // Real-time and accelerated clocks keep moving, so the boards follow them
+        new javax.swing.Timer(BOARD_REFRESH, e -> departureBoard.advanceTo(getCurrentTime())).start();
     }
     
      private void setupTestTime() {
@@ -74,10 +79,15 @@ public class TicketBookingSystem extends JFrame {
         JButton updateButton = new JButton("Set As Current Time");
         updateButton.addActionListener(e -> {
             Date date = (Date) testTimeSpinner.getValue();
-            simulatedCurrentTime = LocalTime.ofInstant(date.toInstant(), 
-                                                     ZoneId.systemDefault())
-                                          .withSecond(0)
-                                          .withNano(0);
+            LocalTime testTime = LocalTime.ofInstant(date.toInstant(), 
+                                                   ZoneId.systemDefault())
+                                        .withSecond(0)
+                                        .withNano(0);
+            // An accelerated clock restarts from the test time; any other clock stops there
+            clock = clock instanceof MetroClock.Accelerated
+                ? MetroClock.accelerated(testTime, ((MetroClock.Accelerated) clock).getSpeed())
+                : MetroClock.fixed(testTime);
+            departureBoard.advanceTo(testTime);
             updateDefaultDepartureTime();
         });
         
@@ -99,35 +109,11 @@ public class TicketBookingSystem extends JFrame {
     }
      
     private LocalTime getCurrentTime() {
-        return simulatedCurrentTime;
+        return LocalTime.now(clock).withSecond(0).withNano(0);
     }
     
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
     
-    private void initializeGraph() {
-        for (int i = 0; i < NUM_STATIONS; i++) {
-            Arrays.fill(graph[i], INFINITY);
-            graph[i][i] = 0;
-        }
-        
-        // Add connections from the given matrix
-        addConnection(0, 1, 10); // A-B
-        addConnection(0, 2, 22); // A-C
-        addConnection(0, 4, 8);  // A-E
-        addConnection(1, 2, 15); // B-C
-        addConnection(1, 3, 9);  // B-D
-        addConnection(1, 5, 7);  // B-F
-        addConnection(2, 3, 9);  // C-D
-        addConnection(3, 4, 5);  // D-E
-        addConnection(3, 5, 12); // D-F
-        addConnection(4, 5, 16); // E-F
-    }
-    
-    private void addConnection(int from, int to, int distance) {
-        graph[from][to] = distance;
-        graph[to][from] = distance;
-    }
-    
     private void setupGUI() {
         setTitle("Metro Ticket Booking System");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -229,6 +215,22 @@ public class TicketBookingSystem extends JFrame {
         roundTripCheckBox = new JCheckBox("Round Trip (10% Discount on Return Journey)");
         inputPanel.add(roundTripCheckBox, gridBagLayout);
 
+        // Time spent at the destination before the return journey
+        gridBagLayout.gridx = 0;
+        gridBagLayout.gridy = row++;
+        gridBagLayout.gridwidth = 1;
+        inputPanel.add(new JLabel("Stay Before Return (minutes):"), gridBagLayout);
+
+        dwellSpinner = new JSpinner(new SpinnerNumberModel(60, 0, 600, 15));
+        dwellSpinner.setEnabled(false);
+        dwellSpinner.addChangeListener(e -> {
+            if (currentPath != null && !currentPath.isEmpty()) {
+                updateSchedule(currentPath);
+            }
+        });
+        gridBagLayout.gridx = 1;
+        inputPanel.add(dwellSpinner, gridBagLayout);
+
         // Fare Display
         gridBagLayout.gridx = 0;
         gridBagLayout.gridy = row++;
@@ -282,13 +284,18 @@ public class TicketBookingSystem extends JFrame {
         // Add change listeners
         startStationCombo.addActionListener(e -> updateFareEstimate());
         endStationCombo.addActionListener(e -> updateFareEstimate());
-        roundTripCheckBox.addActionListener(e -> updateFareEstimate());
+        roundTripCheckBox.addActionListener(e -> {
+            dwellSpinner.setEnabled(roundTripCheckBox.isSelected());
+            updateFareEstimate();
+        });
     }
      
     private void resetForm() {
         startStationCombo.setSelectedIndex(0);
         endStationCombo.setSelectedIndex(0);
         roundTripCheckBox.setSelected(false);
+        dwellSpinner.setValue(60);
+        dwellSpinner.setEnabled(false);
         
         // Reset time to current time + 5 minutes
         Calendar cal = Calendar.getInstance();
@@ -305,6 +312,15 @@ public class TicketBookingSystem extends JFrame {
         fareLabel.setText("Estimated Fare: --");
     }
     
+    private int[] getPassengerCounts() {
+        return new int[]{
+            (int) adultQuantity.getValue(),
+            (int) studentQuantity.getValue(),
+            (int) seniorQuantity.getValue(),
+            (int) childQuantity.getValue()
+        };
+    }
+    
     private void updateFareEstimate() {
         int startStation = startStationCombo.getSelectedIndex();
         int endStation = endStationCombo.getSelectedIndex();
@@ -319,77 +335,69 @@ public class TicketBookingSystem extends JFrame {
     
     private double calculateFare(int startStation, int endStation) {
         // Calculate base fare based on distance
-        int[] distances = new int[NUM_STATIONS];
-        int[] previousStations = new int[NUM_STATIONS];
-        dijkstra(startStation, distances, previousStations);
+        int[] distances = new int[network.size()];
+        int[] previousStations = new int[network.size()];
+        network.dijkstra(startStation, distances, previousStations);
 
-        double baseFare = distances[endStation] * BASE_FARE_PER_KM;
+        double baseFare = distances[endStation] * Booking.BASE_FARE_PER_KM;
 
         // Apply category discounts
-        int adultCount = (int) adultQuantity.getValue();
-        int studentCount = (int) studentQuantity.getValue();
-        int seniorCount = (int) seniorQuantity.getValue();
-        int childCount = (int) childQuantity.getValue();
-
+        int[] passengers = getPassengerCounts();
         double totalFare = 0.0;
-        totalFare += adultCount * baseFare;
-        totalFare += studentCount * baseFare * 0.5;  // 50% student discount
-        totalFare += seniorCount * baseFare * 0.6;  // 40% senior citizen discount
-        totalFare += childCount * baseFare * 0.3;   // 70% child discount
+        for (Booking.Category category : Booking.Category.values()) {
+            totalFare += passengers[category.ordinal()] * baseFare * category.multiplier;
+        }
 
         // Apply round trip discount if selected
         if (roundTripCheckBox.isSelected()) {
-            totalFare *= 1.8; 
+            totalFare *= Booking.ROUND_TRIP_MULTIPLIER; 
         }
 
         return totalFare;
     }
     
-    private ArrayList<LocalTime[]> getAvailableTrains(LocalTime desiredTime, int travelMinutes) {
-        ArrayList<LocalTime[]> trains = new ArrayList<>();
-        LocalTime systemTime = getCurrentTime();
-
-        // Only search for trains starting from the desired time
-        LocalTime startWindow = desiredTime;
-        LocalTime endWindow = desiredTime.plusMinutes(SEARCH_WINDOW);
-
-        // Ensure we don't show trains before the current time
-        if (startWindow.isBefore(systemTime)) {
-            startWindow = systemTime;
-        }
-
-        // Calculate the next train time 
-        LocalTime nextTrainTime = startWindow;
-        int minutes = nextTrainTime.getMinute();
-        int roundedMinutes = ((minutes + TRAIN_INTERVAL - 1) / TRAIN_INTERVAL) * TRAIN_INTERVAL;
-
-        if (roundedMinutes == 60) {
-            nextTrainTime = nextTrainTime.plusHours(1).withMinute(0);
-        } else {
-            nextTrainTime = nextTrainTime.withMinute(roundedMinutes);
+    private ArrayList<LocalTime[]> getAvailableTrains(int from, int to, LocalTime desiredTime) {
+        return network.getAvailableTrains(from, to, desiredTime, getCurrentTime());
+    }
+    
+    private ArrayList<ArrayList<LocalTime[]>> planReturnOptions(LocalTime outboundArrival, int dwellMinutes) {
+        return network.planReturnOptions(returnPath, outboundArrival, dwellMinutes, RETURN_OPTIONS, getCurrentTime());
+    }
+    
+    private static class RoundTripPlan {
+        final ArrayList<LocalTime[]> outbound;
+        final ArrayList<ArrayList<LocalTime[]>> returnOptions;
+        final int dwellMinutes;
+        
+        RoundTripPlan(ArrayList<LocalTime[]> outbound, ArrayList<ArrayList<LocalTime[]>> returnOptions, int dwellMinutes) {
+            this.outbound = outbound;
+            this.returnOptions = returnOptions;
+            this.dwellMinutes = dwellMinutes;
         }
-        nextTrainTime = nextTrainTime.withSecond(0).withNano(0);
-
-        // Make sure the first train time is not before either the system time or desired time
-        while (nextTrainTime.isBefore(systemTime) || nextTrainTime.isBefore(desiredTime)) {
-            nextTrainTime = nextTrainTime.plusMinutes(TRAIN_INTERVAL);
+    }
+    
+    // Plans the earliest outbound journey and the return options after the dwell time from one
+    // shortest-path search; returns null when no route or outbound train is available
+    private RoundTripPlan planRoundTrip(int startStation, int endStation, LocalTime desiredTime, int dwellMinutes) {
+        int[] distances = new int[network.size()];
+        int[] previousStations = new int[network.size()];
+        network.dijkstra(startStation, distances, previousStations);
+        
+        currentPath = network.reconstructPath(previousStations, startStation, endStation);
+        if (currentPath.isEmpty()) {
+            return null;
         }
-
-        int optionsCount = 0;
-        while (!nextTrainTime.isAfter(endWindow) && optionsCount < 8) {  
-            // Only add trains that are within operating hours
-            if (!nextTrainTime.isBefore(FIRST_TRAIN) && !nextTrainTime.isAfter(LAST_TRAIN)) {
-                LocalTime arrival = nextTrainTime.plusMinutes(travelMinutes + STATION_WAIT_TIME);
-                if (!arrival.isAfter(LAST_TRAIN)) {
-                    trains.add(new LocalTime[]{nextTrainTime, arrival});
-                    optionsCount++;
-                }
-            }
-            nextTrainTime = nextTrainTime.plusMinutes(TRAIN_INTERVAL);
+        returnPath = new ArrayList<>(currentPath);
+        Collections.reverse(returnPath);
+        
+        ArrayList<ArrayList<LocalTime[]>> outbound = network.planItineraries(currentPath, desiredTime, 1, getCurrentTime());
+        if (outbound.isEmpty()) {
+            return null;
         }
-
-        trains.sort((a, b) -> a[0].compareTo(b[0]));
-        return trains;
+        
+        ArrayList<LocalTime[]> outboundLegs = outbound.get(0);
+        LocalTime arrival = outboundLegs.get(outboundLegs.size() - 1)[1];
+        return new RoundTripPlan(outboundLegs, planReturnOptions(arrival, dwellMinutes), dwellMinutes);
     }
     
     private void findPath() {
@@ -428,22 +436,28 @@ public class TicketBookingSystem extends JFrame {
             return;
         }
         
-        if (selectedTime.isBefore(FIRST_TRAIN) || selectedTime.isAfter(LAST_TRAIN)) {
+        if (selectedTime.isBefore(MetroNetwork.FIRST_TRAIN) || selectedTime.isAfter(MetroNetwork.LAST_TRAIN)) {
             JOptionPane.showMessageDialog(this, 
                 "Trains operate only between " + 
-                FIRST_TRAIN.format(TIME_FORMATTER) + " and " + 
-                LAST_TRAIN.format(TIME_FORMATTER) + ".");
+                MetroNetwork.FIRST_TRAIN.format(TIME_FORMATTER) + " and " + 
+                MetroNetwork.LAST_TRAIN.format(TIME_FORMATTER) + ".");
             return;
         }
         
-        // To find shortest path
-        int[] distances = new int[NUM_STATIONS];
-        int[] previousStations = new int[NUM_STATIONS];
-        dijkstra(startStation, distances, previousStations);
-        
-        
-        // Get routes
-        currentPath = reconstructPath(previousStations, startStation, endStation);
+        if (roundTripCheckBox.isSelected()) {
+            roundTripPlan = planRoundTrip(startStation, endStation, selectedTime, (int) dwellSpinner.getValue());
+        } else {
+            // To find shortest path
+            int[] distances = new int[network.size()];
+            int[] previousStations = new int[network.size()];
+            network.dijkstra(startStation, distances, previousStations);
+            
+            // Get routes
+            currentPath = network.reconstructPath(previousStations, startStation, endStation);
+            returnPath = new ArrayList<>(currentPath);
+            Collections.reverse(returnPath);
+            roundTripPlan = null;
+        }
         
         if (currentPath.isEmpty()) {
             resultArea.setText("No route available between selected stations.");
@@ -470,10 +484,7 @@ public class TicketBookingSystem extends JFrame {
         for (int i = 0; i < path.size() - 1; i++) {
             int from = path.get(i);
             int to = path.get(i + 1);
-            int distance = graph[from][to];
-
-            int travelMinutes = (int) Math.ceil((distance / (double) TRAIN_SPEED) * 60);
-            ArrayList<LocalTime[]> availableTrains = getAvailableTrains(currentTime, travelMinutes);
+            ArrayList<LocalTime[]> availableTrains = getAvailableTrains(from, to, currentTime);
 
             if (availableTrains.isEmpty()) {
                 JOptionPane.showMessageDialog(this, 
@@ -504,7 +515,7 @@ public class TicketBookingSystem extends JFrame {
                     validateSelection();
 
                     if (segmentIndex < path.size() - 2) {
-                        LocalTime nextSegmentStartTime = trainTimes[1].plusMinutes(MIN_TRANSFER_TIME);
+                        LocalTime nextSegmentStartTime = trainTimes[1].plusMinutes(MetroNetwork.MIN_TRANSFER_TIME);
                         regenerateNextSegment(path, segmentIndex + 1, nextSegmentStartTime);
                     }
                 });
@@ -530,13 +541,10 @@ public class TicketBookingSystem extends JFrame {
      private void regenerateNextSegment(ArrayList<Integer> path, int segmentIndex, LocalTime startTime) {
         int from = path.get(segmentIndex);
         int to = path.get(segmentIndex + 1);
-        int distance = graph[from][to];
-        
-        int travelMinutes = (int) Math.ceil((distance / (double) TRAIN_SPEED) * 60);
-        ArrayList<LocalTime[]> availableTrains = getAvailableTrains(startTime, travelMinutes);
+        ArrayList<LocalTime[]> availableTrains = getAvailableTrains(from, to, startTime);
         
         // Remove impossible train connections
-        availableTrains.removeIf(train -> train[0].isBefore(startTime.plusMinutes(MIN_TRANSFER_TIME)));
+        availableTrains.removeIf(train -> train[0].isBefore(startTime.plusMinutes(MetroNetwork.MIN_TRANSFER_TIME)));
         
         // Update to accomodate the next train times according to the selected times
         Component[] components = trainSelectionPanel.getComponents();
@@ -564,7 +572,7 @@ public class TicketBookingSystem extends JFrame {
                         validateSelection();
                         
                         if (segmentIndex < path.size() - 2) {
-                            LocalTime nextSegmentStartTime = trainTimes[1].plusMinutes(MIN_TRANSFER_TIME);
+                            LocalTime nextSegmentStartTime = trainTimes[1].plusMinutes(MetroNetwork.MIN_TRANSFER_TIME);
                             regenerateNextSegment(path, segmentIndex + 1, nextSegmentStartTime);
                         }
                     });
@@ -582,8 +590,11 @@ public class TicketBookingSystem extends JFrame {
     private void validateSelection() {
         // Check if all segments have selected trains and times are valid
         if (selectedTimes.size() == currentPath.size() - 1) {
-            confirmButton.setEnabled(true);
             updateSchedule(currentPath);
+            confirmButton.setEnabled(planReturnLegs() != null);
+            if (!confirmButton.isEnabled()) {
+                showNoReturnMessage();
+            }
         } else {
             confirmButton.setEnabled(false);
         }
@@ -593,139 +604,32 @@ public class TicketBookingSystem extends JFrame {
         if (selectedTimes.isEmpty() || currentPath.isEmpty()) {
             return;
         }
-
-        StringBuilder ticket = new StringBuilder();
-        ticket.append("╔══════════════════════════════════════════════════════════════╗\n");
-        ticket.append("                      METRO TICKET                      \n");
-        ticket.append("╠══════════════════════════════════════════════════════════════╣\n");
-        ticket.append(String.format("  From: %-52s  \n", "Station " + stationNames[currentPath.get(0)]));
-        ticket.append(String.format("  To:   %-52s  \n", "Station " + stationNames[currentPath.get(currentPath.size() - 1)]));
-        ticket.append(String.format("  Date: %-52s  \n", java.time.LocalDate.now()));
-        ticket.append("\n");
-        ticket.append("                     JOURNEY DETAILS                    \n");
-        ticket.append("╠══════════════════════════════════════════════════════════════╣\n");
-
-        int totalMinutes = 0;
-        LocalTime previousArrival = null;
-        boolean hasTightConnection = false;
-
-        for (int i = 0; i < selectedTimes.size(); i++) {
-            LocalTime[] times = selectedTimes.get(i);
-            int from = currentPath.get(i);
-            int to = currentPath.get(i + 1);
-
-            if (previousArrival != null) {
-                int transferTime = (int) previousArrival.until(times[0], java.time.temporal.ChronoUnit.MINUTES);
-                ticket.append("                                                              \n");
-                ticket.append(String.format("  Transfer at Station %-41s  \n", stationNames[from]));
-                ticket.append(String.format("  Wait time: %-47s  \n", transferTime + " minutes"));
-                if (transferTime < MIN_TRANSFER_TIME) {
-                    ticket.append("  ⚠ WARNING: This is a tight connection!                      \n");
-                    hasTightConnection = true;
-                }
-                ticket.append("                                                              \n");
-                totalMinutes += transferTime;
-            }
-
-            int journeyMinutes = (int) times[0].until(times[1], java.time.temporal.ChronoUnit.MINUTES);
-            ticket.append(String.format("  Train %-53d  \n", i + 1));
-            ticket.append(String.format("  %-56s  \n", stationNames[from] + " → " + stationNames[to]));
-            ticket.append(String.format("  Departure: %-48s  \n", times[0].format(DateTimeFormatter.ofPattern("HH:mm")) + " hrs"));
-            ticket.append(String.format("  Arrival:   %-48s  \n", times[1].format(DateTimeFormatter.ofPattern("HH:mm")) + " hrs"));
-            ticket.append(String.format("  Duration:  %-48s  \n", journeyMinutes + " minutes"));
-
-            totalMinutes += journeyMinutes;
-            previousArrival = times[1];
-        }
-
-        ticket.append(String.format(" \n Total Journey Time: %-42s  \n", totalMinutes + " minutes"));
-
-        // Add Fare Breakdown section
-        ticket.append("╟──────────────────────────────────────────────────────────────╢\n");
-        ticket.append("                     FARE BREAKDOWN                     \n");
-        ticket.append("╠══════════════════════════════════════════════════════════════╣\n");
-
-        int[] distances = new int[NUM_STATIONS];
-        int[] previousStations = new int[NUM_STATIONS];
-        int startStation = currentPath.get(0);
-        int endStation = currentPath.get(currentPath.size() - 1);
-
-        dijkstra(startStation, distances, previousStations);
-        double baseFare = distances[endStation] * BASE_FARE_PER_KM;
-
-        // Check peak hour status
-        LocalTime currentTime = getCurrentTime();
-        boolean isPeakHour = (currentTime.isAfter(LocalTime.of(8, 0)) && 
-                             currentTime.isBefore(LocalTime.of(10, 0))) || 
-                            (currentTime.isAfter(LocalTime.of(17, 0)) && 
-                             currentTime.isBefore(LocalTime.of(19, 0)));
-
-        ticket.append(String.format("  Base fare (%.1f km × %.2f ₺/km): %-33.2f \n", 
-            (double)distances[endStation], BASE_FARE_PER_KM, baseFare));
-        ticket.append("╟──────────────────────────────────────────────────────────────╢\n");
-
-        if (isPeakHour) {
-            ticket.append(String.format("  Peak hour surcharge (%.1f×): %-37.2f \n", 
-                PEAK_HOUR_MULTIPLIER, baseFare * (PEAK_HOUR_MULTIPLIER - 1)));
-            baseFare *= PEAK_HOUR_MULTIPLIER;
-        }
-
-        int adultCount = (int) adultQuantity.getValue();
-        int studentCount = (int) studentQuantity.getValue();
-        int seniorCount = (int) seniorQuantity.getValue();
-        int childCount = (int) childQuantity.getValue();
-        double totalFare = 0.0;
-
-        if (adultCount > 0) {
-            double adultFare = adultCount * baseFare;
-            totalFare += adultFare;
-            ticket.append(String.format("  Adults (%d × %.2f ₺): %-42.2f \n", 
-                adultCount, baseFare, adultFare));
-        }
-
-        if (studentCount > 0) {
-            double studentFare = studentCount * baseFare * 0.5;
-            totalFare += studentFare;
-            ticket.append(String.format("  Students (%d × %.2f ₺ × 50%%): %-35.2f \n", 
-                studentCount, baseFare, studentFare));
-        }
-
-        if (seniorCount > 0) {
-            double seniorFare = seniorCount * baseFare * 0.6;
-            totalFare += seniorFare;
-            ticket.append(String.format("  Senior Citizens (%d × %.2f ₺ × 60%%): %-30.2f \n", 
-                seniorCount, baseFare, seniorFare));
+        
+        // Passenger counts may have changed since the search
+        if (!validatePassengerCount()) {
+            return;
         }
 
-        if (childCount > 0) {
-            double childFare = childCount * baseFare * 0.3;
-            totalFare += childFare;
-            ticket.append(String.format("  Children (%d × %.2f ₺ × 30%%): %-35.2f \n", 
-                childCount, baseFare, childFare));
+        // The round trip or stay may have changed since the trains were chosen
+        ArrayList<LocalTime[]> returnLegs = planReturnLegs();
+        if (returnLegs == null) {
+            confirmButton.setEnabled(false);
+            showNoReturnMessage();
+            return;
         }
-
-        if (roundTripCheckBox.isSelected()) {
-            double returnDiscount = totalFare * 0.1;
-            ticket.append(String.format("  Round Trip Discount (10%%): -%-35.2f \n", returnDiscount));
-            totalFare *= 1.8; // Apply 10% discount on return journey
+        if (!roundTripCheckBox.isSelected()) {
+            returnLegs = null;
         }
 
-        ticket.append("╟──────────────────────────────────────────────────────────────╢\n");
-        ticket.append(String.format("  Total Fare: %-48.2f ₺\n", totalFare));
+        Booking booking = new Booking(network, currentPath, new ArrayList<>(selectedTimes),
+            roundTripCheckBox.isSelected() ? returnPath : null, returnLegs,
+            getPassengerCounts(), getCurrentTime(), LocalDate.now(clock));
 
-        ticket.append("╟──────────────────────────────────────────────────────────────╢\n");
-        ticket.append("                     IMPORTANT NOTES                     \n");
-        ticket.append("╠══════════════════════════════════════════════════════════════╣\n");
-        if (hasTightConnection) {
-            ticket.append("  ⚠ WARNING: This journey includes tight connections!          \n");
-            ticket.append("  Please be prepared to move quickly between trains.           \n");
-        }
-        ticket.append("  • Please arrive 5 minutes before departure\n");
-        ticket.append("  • Keep this ticket until the end of your journey\n");
-        ticket.append("  • Follow station staff instructions at all times\n");
-        ticket.append("╚══════════════════════════════════════════════════════════════╝\n");
+        // Booked passengers show up as load changes on the station departure boards
+        departureBoard.recordBooking(booking);
+        analytics.record(booking);
 
-        JTextArea ticketArea = new JTextArea(ticket.toString());
+        JTextArea ticketArea = new JTextArea(booking.formatTicket());
         ticketArea.setEditable(false);
         ticketArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
 
@@ -739,6 +643,24 @@ public class TicketBookingSystem extends JFrame {
         ticketDialog.setVisible(true);
     }
 
+    // Earliest return after the chosen outbound trains; empty for a one-way trip, null when a
+    // round trip has no return train before the last train
+    private ArrayList<LocalTime[]> planReturnLegs() {
+        if (!roundTripCheckBox.isSelected()) {
+            return new ArrayList<>();
+        }
+        LocalTime outboundArrival = selectedTimes.get(selectedTimes.size() - 1)[1];
+        ArrayList<ArrayList<LocalTime[]>> returnOptions = planReturnOptions(outboundArrival, (int) dwellSpinner.getValue());
+        return returnOptions.isEmpty() ? null : returnOptions.get(0);
+    }
+    
+    private void showNoReturnMessage() {
+        JOptionPane.showMessageDialog(this, 
+            "No return trains available before the last train after a " + dwellSpinner.getValue() + 
+            " minute stay.\nPlease choose earlier trains, a shorter stay or a one-way ticket.", 
+            "Round Trip Unavailable", 
+            JOptionPane.WARNING_MESSAGE);
+    }
     
      private void updateSchedule(ArrayList<Integer> path) {
         StringBuilder schedule = new StringBuilder();
@@ -765,12 +687,12 @@ public class TicketBookingSystem extends JFrame {
 
                 if (previousArrival != null) {
                     int transferTime = (int) previousArrival.until(times[0], java.time.temporal.ChronoUnit.MINUTES);
-                    String warningMessage = transferTime < MIN_TRANSFER_TIME ? 
+                    String warningMessage = transferTime < MetroNetwork.MIN_TRANSFER_TIME ? 
                         " ⚠ WARNING: This is a tight connection!" : "";
                     schedule.append(String.format("\nYou have a waiting time at Station %s for %d minutes.%s\n\n",
                             stationNames[path.get(i)], transferTime, warningMessage));
                     totalMinutes += transferTime;
-                    if (transferTime < MIN_TRANSFER_TIME) {
+                    if (transferTime < MetroNetwork.MIN_TRANSFER_TIME) {
                         hasTightConnection = true;
                     }
                 }
@@ -788,9 +710,51 @@ public class TicketBookingSystem extends JFrame {
             }
         }
 
+        if (roundTripCheckBox.isSelected() && returnPath != null && !returnPath.isEmpty()) {
+            appendReturnOptions(schedule);
+        }
+
         resultArea.setText(schedule.toString());
     }
      
+    private void appendReturnOptions(StringBuilder schedule) {
+        int dwellMinutes = (int) dwellSpinner.getValue();
+        LocalTime outboundArrival;
+        
+        if (selectedTimes.size() == currentPath.size() - 1) {
+            outboundArrival = selectedTimes.get(selectedTimes.size() - 1)[1];
+        } else if (roundTripPlan != null) {
+            // Preview based on the earliest outbound journey until every segment is chosen
+            outboundArrival = roundTripPlan.outbound.get(roundTripPlan.outbound.size() - 1)[1];
+            schedule.append(String.format("Earliest outbound arrival at Station %s: %s hrs\n",
+                    stationNames[currentPath.get(currentPath.size() - 1)], outboundArrival.format(TIME_FORMATTER)));
+        } else {
+            return;
+        }
+        
+        boolean usePlan = roundTripPlan != null && selectedTimes.size() < currentPath.size() - 1
+                && roundTripPlan.dwellMinutes == dwellMinutes;
+        ArrayList<ArrayList<LocalTime[]>> returnOptions = usePlan
+            ? roundTripPlan.returnOptions
+            : planReturnOptions(outboundArrival, dwellMinutes);
+        
+        schedule.append(String.format("\nReturn %s to %s after a %d minute stay\n",
+                stationNames[returnPath.get(0)], stationNames[returnPath.get(returnPath.size() - 1)], dwellMinutes));
+        schedule.append("--------------\n");
+        
+        if (returnOptions.isEmpty()) {
+            schedule.append("No return trains available before the last train.\n");
+            return;
+        }
+        
+        for (ArrayList<LocalTime[]> legs : returnOptions) {
+            schedule.append(String.format("Depart %s hrs - Arrive %s hrs (%d train%s)\n",
+                    legs.get(0)[0].format(TIME_FORMATTER),
+                    legs.get(legs.size() - 1)[1].format(TIME_FORMATTER),
+                    legs.size(), legs.size() == 1 ? "" : "s"));
+        }
+    }
+     
      private boolean validatePassengerCount() {
         int totalPassengers = (int)adultQuantity.getValue() + 
                             (int)studentQuantity.getValue() + 
@@ -816,60 +780,61 @@ public class TicketBookingSystem extends JFrame {
         return true;
     }
     
-    private void dijkstra(int startStation, int[] distances, int[] previousStations) {
-        boolean[] visited = new boolean[NUM_STATIONS];
-        Arrays.fill(distances, INFINITY);
-        Arrays.fill(previousStations, -1);
-        distances[startStation] = 0;
-        
-        for (int i = 0; i < NUM_STATIONS; i++) {
-            int minStation = -1;
-            int minDistance = INFINITY;
-            
-            for (int j = 0; j < NUM_STATIONS; j++) {
-                if (!visited[j] && distances[j] < minDistance) {
-                    minStation = j;
-                    minDistance = distances[j];
-                }
-            }
-            
-            if (minStation == -1) break;
-            
-            visited[minStation] = true;
-            
-            for (int j = 0; j < NUM_STATIONS; j++) {
-                if (!visited[j] && graph[minStation][j] != INFINITY) {
-                    int newDist = distances[minStation] + graph[minStation][j];
-                    if (newDist < distances[j]) {
-                        distances[j] = newDist;
-                        previousStations[j] = minStation;
-                    }
-                }
-            }
-        }
-    }
-    
-    private ArrayList<Integer> reconstructPath(int[] previousStations, int startStation, int endStation) {
-        ArrayList<Integer> path = new ArrayList<>();
-        for (int at = endStation; at != -1; at = previousStations[at]) {
-            path.add(at);
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            BatchBooking.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
         }
-        Collections.reverse(path);
-        
-        if (path.get(0) != startStation) {
-            return new ArrayList<>();
+        if (args.length > 0 && args[0].equals("--simulate")) {
+            OperatingDaySimulation.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
         }
         
-        return path;
-    }
-    
-    public static void main(String[] args) {
+        Clock clock = parseClock(args);
         SwingUtilities.invokeLater(() -> {
             try {
                 UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
             } catch (ClassNotFoundException | IllegalAccessException | InstantiationException | UnsupportedLookAndFeelException e) {
             }
-            new TicketBookingSystem().setVisible(true);
+            new TicketBookingSystem(clock).setVisible(true);
         });
     }
+    
+    // --real-time, --at HH:mm, or --at HH:mm --speed N for a clock running N times faster
+    private static Clock parseClock(String[] args) {
+        if (args.length == 1 && args[0].equals("--real-time")) {
+            return MetroClock.realTime();
+        }
+        LocalTime at = LocalTime.of(13, 0);
+        double speed = 0;
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                if (i + 1 == args.length) {
+                    clockUsage();
+                }
+                switch (args[i]) {
+                    case "--at":
+                        at = LocalTime.parse(args[i + 1]);
+                        break;
+                    case "--speed":
+                        speed = Double.parseDouble(args[i + 1]);
+                        if (!(speed > 0)) {
+                            clockUsage();
+                        }
+                        break;
+                    default:
+                        clockUsage();
+                }
+            }
+        } catch (DateTimeParseException | NumberFormatException e) {
+            clockUsage();
+        }
+        return speed > 0 ? MetroClock.accelerated(at, speed) : MetroClock.fixed(at);
+    }
+
+    private static void clockUsage() {
+        System.err.println("Usage: java TicketBookingSystem [--real-time | [--at HH:mm] [--speed N]]");
+        System.err.println("       java TicketBookingSystem --batch ... | --simulate ...");
+        System.exit(2);
+    }
 }
\ No newline at end of file